@@ -1,7 +1,6 @@
 package pacman;
 
 import static pacman.game.Constants.DELAY;
-import static pacman.game.Constants.INTERVAL_WAIT;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
@@ -9,12 +8,23 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 import pacman.controllers.Controller;
 import pacman.controllers.HumanController;
+import pacman.controllers.LatencyHistogram;
 import pacman.controllers.examples.Legacy;
 import pacman.entries.ghosts.MemetixGhosts;
 import pacman.entries.pacman.WillStoltonPacman;
@@ -22,6 +32,7 @@ import pacman.game.Constants.GHOST;
 import pacman.game.Constants.MOVE;
 import pacman.game.Game;
 import pacman.game.GameView;
+import pacman.game.ReadOnlyGame;
 
 /**
  * This class may be used to execute the game in timed or un-timed modes, with
@@ -35,6 +46,17 @@ public class Executor {
 
 	private double avgScore;
 
+	// measures the CPU time of controllers in virtual time mode (see runGameVirtualTime())
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported()
+			&& THREADS.isThreadCpuTimeEnabled();
+
+	// plays a single game to the end and returns the final score
+	@FunctionalInterface
+	private interface Trial {
+		int play(Controller<MOVE> pacManController, Controller<EnumMap<GHOST, MOVE>> ghostController, long seed);
+	}
+
 	/**
 	 * The main method. Several options are listed - simply remove comments to
 	 * use the option you want.
@@ -51,6 +73,9 @@ public class Executor {
 		boolean visual = true;
 		int numTrials = 100;
 		exec.runExperiment(new WillStoltonPacman(), new Legacy(), numTrials);
+		// same experiment spread over all cores: each worker thread builds its own controllers
+		// exec.runExperiment(WillStoltonPacman::new, Legacy::new, numTrials,
+		// Runtime.getRuntime().availableProcessors());
 		//exec.runGameTimed(new WillStoltonPacman(), new Legacy(), visual);
 
 		// run a game in synchronous mode: game waits until controllers respond.
@@ -78,6 +103,11 @@ public class Executor {
 		// exec.runGameTimedSpeedOptimised(new RandomPacMan(),new
 		// RandomGhosts(),fixedTime,visual);
 
+		// run games headless under the timed rules, but against a virtual clock:
+		// no sleeping, and replies that used more than DELAY ms of CPU time are late.
+		// exec.runExperimentVirtualTime(WillStoltonPacman::new, Legacy::new, numTrials,
+		// Runtime.getRuntime().availableProcessors());
+
 		/*
 		 * //run game in asynchronous mode and record it to file for replay at a
 		 * later stage. boolean visual=true; String fileName="replay.txt";
@@ -104,33 +134,255 @@ public class Executor {
 	 */
 	public void runExperiment(Controller<MOVE> pacManController, Controller<EnumMap<GHOST, MOVE>> ghostController,
 			int trials) {
+		Game.precomputeMazes();
+
+		pacManController.resetLatencies();
+		ghostController.resetLatencies();
+
 		int totalScore = 0;
 
 		Random rnd = new Random(0);
-		Game game;
 		int high = 0;
 		for (int i = 0; i < trials; i++) {
-			game = new Game(rnd.nextLong());
 			System.out.println("New Game : " + i);
 
-			while (!game.gameOver()) {
-				game.advanceGame(pacManController.getMove(game.copy(), System.currentTimeMillis() + DELAY),
-						ghostController.getMove(game.copy(), System.currentTimeMillis() + DELAY));
+			int score = runTrial(pacManController, ghostController, rnd.nextLong());
+
+			totalScore += score;
+			high = Math.max(high, score);
+			System.out.println(i + "\t" + score);
+		}
+		printExperimentReport(pacManController.getClass().getSimpleName(), totalScore, high, trials);
+		printLatencyReport(pacManController);
+		printLatencyReport(ghostController);
+	}
+
+	/**
+	 * Parallel version of runExperiment(): the trials are spread over a fixed pool
+	 * of worker threads. The seeds are drawn up-front from the same generator used
+	 * by the serial version, so trial i starts from the same seed in both modes.
+	 * Controllers usually keep state between calls, so each worker obtains its own
+	 * instances from the factories supplied and reuses them for all the trials it
+	 * executes. Which trials a worker gets depends on scheduling: a controller that
+	 * carries state from one game to the next may thus play trial i differently
+	 * than in the serial version. The latencies are reported over all the instances.
+	 *
+	 * @param pacManFactory
+	 *            Creates a Pac-Man controller for each worker thread
+	 * @param ghostFactory
+	 *            Creates a Ghosts controller for each worker thread
+	 * @param trials
+	 *            The number of trials to be executed
+	 * @param threads
+	 *            The number of worker threads
+	 */
+	public void runExperiment(Supplier<? extends Controller<MOVE>> pacManFactory,
+			Supplier<? extends Controller<EnumMap<GHOST, MOVE>>> ghostFactory, int trials, int threads) {
+		runExperiment(pacManFactory, ghostFactory, trials, threads, Executor::runTrial);
+	}
+
+	// plays the trials of a parallel experiment (see above) using the trial supplied
+	private void runExperiment(Supplier<? extends Controller<MOVE>> pacManFactory,
+			Supplier<? extends Controller<EnumMap<GHOST, MOVE>>> ghostFactory, int trials, int threads, Trial trial) {
+		Game.precomputeMazes();
+
+		Random rnd = new Random(0);
+		long[] seeds = new long[trials];
+		for (int i = 0; i < trials; i++)
+			seeds[i] = rnd.nextLong();
+
+		List<Controller<?>> pacManInstances = Collections.synchronizedList(new ArrayList<Controller<?>>());
+		List<Controller<?>> ghostInstances = Collections.synchronizedList(new ArrayList<Controller<?>>());
+
+		ThreadLocal<Controller<MOVE>> pacManControllers = ThreadLocal
+				.withInitial(() -> track(pacManFactory.get(), pacManInstances));
+		ThreadLocal<Controller<EnumMap<GHOST, MOVE>>> ghostControllers = ThreadLocal
+				.withInitial(() -> track(ghostFactory.get(), ghostInstances));
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>(trials);
+
+		for (int i = 0; i < trials; i++) {
+			final long seed = seeds[i];
+			results.add(pool.submit(() -> trial.play(pacManControllers.get(), ghostControllers.get(), seed)));
+		}
+
+		int totalScore = 0;
+		int high = 0;
+		try {
+			for (int i = 0; i < trials; i++) {
+				int score = results.get(i).get();
+
+				totalScore += score;
+				high = Math.max(high, score);
+				System.out.println(i + "\t" + score);
 			}
+		} catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+			return;
+		} finally {
+			pool.shutdownNow();
+		}
+		printExperimentReport(nameOf(pacManInstances), totalScore, high, trials);
+		printLatencyReport(nameOf(pacManInstances), mergeLatencies(pacManInstances));
+		printLatencyReport(nameOf(ghostInstances), mergeLatencies(ghostInstances));
+	}
+
+	// records a controller created for a worker thread in the list given, and returns it
+	private static <C extends Controller<?>> C track(C controller, List<Controller<?>> controllers) {
+		controllers.add(controller);
+		return controller;
+	}
+
+	// the name of the controllers created by a factory, taken from an instance a worker has used
+	private static String nameOf(List<Controller<?>> controllers) {
+		return controllers.isEmpty() ? "" : controllers.get(0).getClass().getSimpleName();
+	}
+
+	// adds up the latency histograms of the controllers given; their threads must be done
+	private static LatencyHistogram mergeLatencies(List<Controller<?>> controllers) {
+		LatencyHistogram merged = new LatencyHistogram();
+
+		for (Controller<?> controller : controllers)
+			merged.add(controller.getLatencies());
+
+		return merged;
+	}
+
+	// plays a single game of an experiment to the end and returns the final score. Both
+	// controllers read the same snapshot, a new one every time step: a controller may keep
+	// the games it has been handed.
+	private static int runTrial(Controller<MOVE> pacManController, Controller<EnumMap<GHOST, MOVE>> ghostController,
+			long seed) {
+		Game game = new Game(seed);
+
+		while (!game.gameOver()) {
+			ReadOnlyGame snapshot = game.snapshot();
+			game.advanceGame(pacManController.computeMove(snapshot, System.currentTimeMillis() + DELAY),
+					ghostController.computeMove(snapshot, System.currentTimeMillis() + DELAY));
+		}
+
+		return game.getScore();
+	}
+
+	/**
+	 * Runs a game without visuals under the rules of the timed modes, but against a
+	 * virtual clock instead of the wall clock. Each time step, both controllers are
+	 * asked for a move in turn, and the game advances as soon as both have replied.
+	 * There is no sleeping. A reply counts only if the controller used no more than
+	 * DELAY ms of CPU time to compute it. Otherwise the controller's previous move is
+	 * played, as it would be in the timed modes.
+	 *
+	 * The controllers receive a due time of -1 (no time limit, as in runGame()): a
+	 * due time on the wall clock would make controllers that compute until it is due
+	 * take DELAY ms per time step, and compute more or less depending on the load of
+	 * the machine. Such controllers must bound their work themselves in this mode;
+	 * the budget is only enforced by discarding the replies that exceed it.
+	 *
+	 * CPU time, as opposed to elapsed time, hardly depends on what else the machine
+	 * is doing. The results of deterministic controllers can thus be reproduced from
+	 * the seed, even on a busy machine. Only the CPU time of the thread calling the
+	 * controller is measured: time spent on threads the controller starts itself is
+	 * not counted. Controllers that overrun are not interrupted: the game waits for
+	 * their reply, which is then discarded. The CPU time taken by each reply is
+	 * recorded in the controller's latency histogram.
+	 *
+	 * @param pacManController
+	 *            The Pac-Man controller
+	 * @param ghostController
+	 *            The Ghosts controller
+	 * @param seed
+	 *            The seed of the game
+	 * @return The final score
+	 */
+	public int runGameVirtualTime(Controller<MOVE> pacManController,
+			Controller<EnumMap<GHOST, MOVE>> ghostController, long seed) {
+		Game.precomputeMazes();
+
+		return runTrialVirtualTime(pacManController, ghostController, seed);
+	}
+
+	/**
+	 * Runs an experiment in virtual time mode (see runGameVirtualTime()). The trials
+	 * are spread over worker threads as in runExperiment(). The CPU time used by each
+	 * controller is measured on its own thread, so running games in parallel does
+	 * not change which replies are late. Once the results are in, the CPU time taken
+	 * by the replies of each controller is reported, including the number of late
+	 * replies.
+	 *
+	 * @param pacManFactory
+	 *            Creates a Pac-Man controller for each worker thread
+	 * @param ghostFactory
+	 *            Creates a Ghosts controller for each worker thread
+	 * @param trials
+	 *            The number of trials to be executed
+	 * @param threads
+	 *            The number of worker threads
+	 */
+	public void runExperimentVirtualTime(Supplier<? extends Controller<MOVE>> pacManFactory,
+			Supplier<? extends Controller<EnumMap<GHOST, MOVE>>> ghostFactory, int trials, int threads) {
+		if (!CPU_TIME)
+			System.out.println("CPU time is not available: the elapsed time is used instead");
 
-			totalScore += game.getScore();
-			high = Math.max(high, game.getScore());
-			System.out.println(i + "\t" + game.getScore());
+		runExperiment(pacManFactory, ghostFactory, trials, threads, Executor::runTrialVirtualTime);
+	}
+
+	// plays a game in virtual time mode and returns the final score. As in runTrial(), the
+	// controllers are handed a new snapshot every time step.
+	private static int runTrialVirtualTime(Controller<MOVE> pacManController,
+			Controller<EnumMap<GHOST, MOVE>> ghostController, long seed) {
+		long budget = DELAY * 1000000L;
+		Game game = new Game(seed);
+		MOVE pacManMove = null;
+		EnumMap<GHOST, MOVE> ghostMoves = null;
+
+		while (!game.gameOver()) {
+			ReadOnlyGame snapshot = game.snapshot();
+
+			long start = cpuTime();
+			MOVE pacManReply = pacManController.getMove(snapshot, -1);
+			long used = cpuTime() - start;
+
+			pacManController.getLatencies().record(used, used > budget);
+			if (used <= budget)
+				pacManMove = pacManReply;
+
+			start = cpuTime();
+			EnumMap<GHOST, MOVE> ghostReply = ghostController.getMove(snapshot, -1);
+			used = cpuTime() - start;
+
+			ghostController.getLatencies().record(used, used > budget);
+			if (used <= budget)
+				ghostMoves = ghostReply;
+
+			game.advanceGame(pacManMove, ghostMoves);
 		}
+
+		return game.getScore();
+	}
+
+	// the CPU time used by the current thread so far, or the elapsed time if the JVM cannot measure it
+	private static long cpuTime() {
+		return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+
+	// prints the latency histogram of a controller (see Controller.getLatencies())
+	private static void printLatencyReport(Controller<?> controller) {
+		printLatencyReport(controller.getClass().getSimpleName(), controller.getLatencies());
+	}
+
+	private static void printLatencyReport(String controllerName, LatencyHistogram latencies) {
+		System.out.println("Latency of " + controllerName + ": " + latencies);
+	}
+
+	private void printExperimentReport(String controllerName, int totalScore, int high, int trials) {
 		avgScore = totalScore / trials;
-		System.out.println(pacManController.getClass().getSimpleName() + " \nHighest Score: " + high
-				+ " \nAverage Score: " + (avgScore));
+		System.out.println(controllerName + " \nHighest Score: " + high + " \nAverage Score: " + (avgScore));
 		System.out.println(
 				"Calculating potential grade - Disclaimer: This is not the final grade and may be effected by machine performance");
 		System.out.println("\nGrade: " + calculatePossibleGrade());
 	}
 
-
 	private String calculatePossibleGrade() {
 		double grade = 0;
 		int minScore = 3000;
@@ -163,23 +415,33 @@ public class Executor {
 	public void runGame(Controller<MOVE> pacManController, Controller<EnumMap<GHOST, MOVE>> ghostController,
 			boolean visual, int delay) {
 		Game game = new Game(0);
+		ReadOnlyGame snapshot = game.snapshot();
 
 		GameView gv = null;
 
 		if (visual)
-			gv = new GameView(game).showGame();
+			gv = new GameView(snapshot).showGame();
+
+		pacManController.resetLatencies();
+		ghostController.resetLatencies();
 
 		while (!game.gameOver()) {
-			game.advanceGame(pacManController.getMove(game.copy(), -1), ghostController.getMove(game.copy(), -1));
+			game.advanceGame(pacManController.computeMove(snapshot, -1), ghostController.computeMove(snapshot, -1));
+			snapshot = game.snapshot();
 
 			try {
 				Thread.sleep(delay);
 			} catch (Exception e) {
 			}
 
-			if (visual)
+			if (visual) {
+				gv.setGame(snapshot);
 				gv.repaint();
+			}
 		}
+
+		printLatencyReport(pacManController);
+		printLatencyReport(ghostController);
 	}
 
 	/**
@@ -196,22 +458,29 @@ public class Executor {
 	 */
 	public void runGameTimed(Controller<MOVE> pacManController, Controller<EnumMap<GHOST, MOVE>> ghostController,
 			boolean visual) {
+		// load all mazes now: building one when the game reaches it would hold up a time step
+		Game.precomputeMazes();
+
 		Game game = new Game(0);
+		ReadOnlyGame snapshot = game.snapshot();
 
 		GameView gv = null;
 
 		if (visual)
-			gv = new GameView(game).showGame();
+			gv = new GameView(snapshot).showGame();
 
 		if (pacManController instanceof HumanController)
 			gv.getFrame().addKeyListener(((HumanController) pacManController).getKeyboardInput());
 
+		pacManController.resetLatencies();
+		ghostController.resetLatencies();
+
 		new Thread(pacManController).start();
 		new Thread(ghostController).start();
 
 		while (!game.gameOver()) {
-			pacManController.update(game.copy(), System.currentTimeMillis() + DELAY);
-			ghostController.update(game.copy(), System.currentTimeMillis() + DELAY);
+			pacManController.update(snapshot, System.currentTimeMillis() + DELAY);
+			ghostController.update(snapshot, System.currentTimeMillis() + DELAY);
 
 			try {
 				Thread.sleep(DELAY);
@@ -220,13 +489,15 @@ public class Executor {
 			}
 
 			game.advanceGame(pacManController.getMove(), ghostController.getMove());
+			snapshot = game.snapshot();
 
-			if (visual)
+			if (visual) {
+				gv.setGame(snapshot);
 				gv.repaint();
+			}
 		}
 
-		pacManController.terminate();
-		ghostController.terminate();
+		terminate(pacManController, ghostController);
 	}
 
 	/**
@@ -246,49 +517,78 @@ public class Executor {
 	 */
 	public void runGameTimedSpeedOptimised(Controller<MOVE> pacManController,
 			Controller<EnumMap<GHOST, MOVE>> ghostController, boolean fixedTime, boolean visual) {
+		// load all mazes now: building one when the game reaches it would hold up a time step
+		Game.precomputeMazes();
+
 		Game game = new Game(0);
+		ReadOnlyGame snapshot = game.snapshot();
 
 		GameView gv = null;
 
 		if (visual)
-			gv = new GameView(game).showGame();
+			gv = new GameView(snapshot).showGame();
 
 		if (pacManController instanceof HumanController)
 			gv.getFrame().addKeyListener(((HumanController) pacManController).getKeyboardInput());
 
+		pacManController.resetLatencies();
+		ghostController.resetLatencies();
+
 		new Thread(pacManController).start();
 		new Thread(ghostController).start();
 
 		while (!game.gameOver()) {
-			pacManController.update(game.copy(), System.currentTimeMillis() + DELAY);
-			ghostController.update(game.copy(), System.currentTimeMillis() + DELAY);
+			long deadline = System.nanoTime() + DELAY * 1000000L;
 
-			try {
-				int waited = DELAY / INTERVAL_WAIT;
-
-				for (int j = 0; j < DELAY / INTERVAL_WAIT; j++) {
-					Thread.sleep(INTERVAL_WAIT);
+			pacManController.update(snapshot, System.currentTimeMillis() + DELAY);
+			ghostController.update(snapshot, System.currentTimeMillis() + DELAY);
 
-					if (pacManController.hasComputed() && ghostController.hasComputed()) {
-						waited = j;
-						break;
-					}
-				}
+			// the controllers wake this thread up as soon as they have replied, so the
+			// game advances the moment the second reply arrives (or the time is up)
+			pacManController.waitForMove(deadline);
+			ghostController.waitForMove(deadline);
 
-				if (fixedTime)
-					Thread.sleep(((DELAY / INTERVAL_WAIT) - waited) * INTERVAL_WAIT);
+			if (fixedTime)
+				parkUntil(deadline);
 
-				game.advanceGame(pacManController.getMove(), ghostController.getMove());
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+			game.advanceGame(pacManController.getMove(), ghostController.getMove());
+			snapshot = game.snapshot();
 
-			if (visual)
+			if (visual) {
+				gv.setGame(snapshot);
 				gv.repaint();
+			}
 		}
 
+		terminate(pacManController, ghostController);
+	}
+
+	// stops the controllers of a timed game and reports their latencies and the time steps at
+	// which the previous move was played. A reply still being computed is waited for (up to
+	// DELAY ms), so it is recorded before the histograms are read.
+	private static void terminate(Controller<MOVE> pacManController,
+			Controller<EnumMap<GHOST, MOVE>> ghostController) {
+		long deadline = System.nanoTime() + DELAY * 1000000L;
+
+		pacManController.waitForMove(deadline);
+		ghostController.waitForMove(deadline);
+
 		pacManController.terminate();
 		ghostController.terminate();
+
+		printLatencyReport(pacManController);
+		System.out.println("Missed moves of " + pacManController.getClass().getSimpleName() + ": "
+				+ pacManController.getMissedMoves());
+		printLatencyReport(ghostController);
+		System.out.println("Missed moves of " + ghostController.getClass().getSimpleName() + ": "
+				+ ghostController.getMissedMoves());
+	}
+
+	// waits until the deadline (in terms of System.nanoTime()); unlike Thread.sleep(), the
+	// time is not rounded to milliseconds
+	private static void parkUntil(long deadline) {
+		for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime())
+			LockSupport.parkNanos(remaining);
 	}
 
 	/**
@@ -307,23 +607,30 @@ public class Executor {
 			Controller<EnumMap<GHOST, MOVE>> ghostController, boolean visual, String fileName) {
 		StringBuilder replay = new StringBuilder();
 
+		// load all mazes now: building one when the game reaches it would hold up a time step
+		Game.precomputeMazes();
+
 		Game game = new Game(0);
+		ReadOnlyGame snapshot = game.snapshot();
 
 		GameView gv = null;
 
 		if (visual) {
-			gv = new GameView(game).showGame();
+			gv = new GameView(snapshot).showGame();
 
 			if (pacManController instanceof HumanController)
 				gv.getFrame().addKeyListener(((HumanController) pacManController).getKeyboardInput());
 		}
 
+		pacManController.resetLatencies();
+		ghostController.resetLatencies();
+
 		new Thread(pacManController).start();
 		new Thread(ghostController).start();
 
 		while (!game.gameOver()) {
-			pacManController.update(game.copy(), System.currentTimeMillis() + DELAY);
-			ghostController.update(game.copy(), System.currentTimeMillis() + DELAY);
+			pacManController.update(snapshot, System.currentTimeMillis() + DELAY);
+			ghostController.update(snapshot, System.currentTimeMillis() + DELAY);
 
 			try {
 				Thread.sleep(DELAY);
@@ -332,15 +639,17 @@ public class Executor {
 			}
 
 			game.advanceGame(pacManController.getMove(), ghostController.getMove());
+			snapshot = game.snapshot();
 
-			if (visual)
+			if (visual) {
+				gv.setGame(snapshot);
 				gv.repaint();
+			}
 
 			replay.append(game.getGameState() + "\n");
 		}
 
-		pacManController.terminate();
-		ghostController.terminate();
+		terminate(pacManController, ghostController);
 
 		saveToFile(replay.toString(), fileName, false);
 	}
@@ -1,139 +1,310 @@
 package pacman.controllers;
 
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
 import pacman.game.Game;
+import pacman.game.ReadOnlyGame;
 
 /**
- * This class is the superclass of your controller. In contains the code required to run the 
- * controller as a thread. In provides numerous methods that allow the Executor to use the 
+ * This class is the superclass of your controller. In contains the code required to run the
+ * controller as a thread. In provides numerous methods that allow the Executor to use the
  * controller in various different execution modes. Your controller only needs to provide the
- * code for the getMove() method.
+ * code for the getMove(ReadOnlyGame,long) method.
+ *
+ * In the timed modes, the thread running the controller (see run()) is a long-lived worker:
+ * it waits for the next game to be posted with update() and calls getMove() on it, without
+ * creating a thread per time step. The game and the time it is due are posted together into
+ * a single-slot mailbox, so a game posted while the worker is still busy replaces the one
+ * waiting (only the latest game is worth computing a move for). The fields shared with the
+ * Executor are volatile, so a move stored by the worker is seen by the Executor as soon as
+ * it has been written.
+ *
+ * Every reply is recorded in the controller's latency histogram (see getLatencies()): in the
+ * timed modes, the worker records the time from the game being posted to the move being stored;
+ * in the synchronous modes, the Executor records the time taken by getMove() (see computeMove()).
+ * In the timed modes, the time steps at which the game has to fall back on the previous move are
+ * counted as well (see getMissedMoves()).
  *
  * @param <T> The generic type of the move to be returned (either a single move for Ms Pac-Man or an EnumMap for the ghosts).
  */
 public abstract class Controller<T> implements Runnable
 {
-	private boolean alive,wasSignalled,hasComputed;
-	private volatile boolean threadStillRunning;
-	private long timeDue;
-	private Game game;
-	protected T lastMove;	//this is now protected. You can set this directly in your getMove() method to save an immediate response.
+	private final AtomicReference<Request> mailbox;
+	private volatile boolean alive;
+	private volatile Thread worker,waiter;
+	private volatile long posted,computed;		//sequence numbers of the last request posted (by the Executor only) and the last one answered
+	private final LatencyHistogram latencies;		//written by the thread computing the moves only
+	private long missed;							//written by the Executor only (see getMove())
+	private final boolean legacy;					//whether the subclass implements the deprecated getMove(Game,long)
+	protected volatile T lastMove;	//this is now protected. You can set this directly in your getMove() method to save an immediate response.
+
+	/*
+	 * A game posted to the controller, along with the time the move is due.
+	 */
+	private static final class Request
+	{
+		final ReadOnlyGame game;
+		final long timeDue,sequence,postedAt;
+
+		Request(ReadOnlyGame game,long timeDue,long sequence,long postedAt)
+		{
+			this.game=game;
+			this.timeDue=timeDue;
+			this.sequence=sequence;
+			this.postedAt=postedAt;
+		}
+	}
 
 	/**
 	 * Instantiates a new controller. The constructor initialises the class variables.
 	 */
 	public Controller()
 	{
+		mailbox=new AtomicReference<Request>();
 		alive=true;
-		wasSignalled=false;
-		hasComputed=false;
-		threadStillRunning=false;
+		latencies=new LatencyHistogram();
+		legacy=implementsLegacyGetMove();
 	}
 
 	/**
-	 * Terminates the controller: a signal is sent and the flag 'alive' is set to false. When
-	 * the thread wakes up, the outer loop will terminate and the thread finishes.
+	 * Terminates the controller: the flag 'alive' is set to false and the worker is woken up,
+	 * so the outer loop will terminate and the thread finishes (once any computation under
+	 * way has returned).
 	 */
 	public final void terminate()
 	{
 		alive=false;
-		wasSignalled=true;
-
-		synchronized(this)
-		{
-			notify();
-		}
+		LockSupport.unpark(worker);
 	}
 
 	/**
-	 * Updates the game state: a copy of the game is passed to this method and the class variable is
-	 * updated accordingly.
+	 * Updates the game state: the game is posted to the worker, replacing any game that it
+	 * has not started on yet, and the worker is woken up. This method does not block.
 	 *
-	 * @param game A copy of the current game
+	 * @param game A read-only snapshot of the current game (see Game.snapshot())
 	 * @param timeDue The time the next move is due
 	 */
-	public final void update(Game game,long timeDue)
+	public final void update(ReadOnlyGame game,long timeDue)
 	{
-		synchronized(this)
-		{
-			this.game=game;
-			this.timeDue=timeDue;
-			wasSignalled=true;
-			hasComputed=false;
-			notify();
-		}
+		mailbox.set(new Request(game,timeDue,++posted,System.nanoTime()));
+		LockSupport.unpark(worker);
 	}
 
 	/**
-	 * Retrieves the move from the controller (whatever is stored in the class variable).
+	 * Retrieves the move from the controller (whatever is stored in the class variable). If the
+	 * controller has not replied to the last game posted yet, the move stored is an earlier one and
+	 * the time step is counted as missed.
 	 *
 	 * @return The move stored in the class variable 'lastMove'
 	 */
 	public final T getMove()
 	{
+		if(!hasComputed())
+			missed++;
+
 		return lastMove;
 	}
-	
+
 	/* (non-Javadoc)
 	 * @see java.lang.Runnable#run()
 	 */
 	public final void run()
 	{
+		worker=Thread.currentThread();
+
 		while(alive)
 		{
-			synchronized(this)
+			Request request=mailbox.getAndSet(null);
+
+			if(request==null)
 			{
-				while(!wasSignalled)
-				{
-					try
-					{
-						wait();
-					}
-					catch(InterruptedException e)
-					{
-						e.printStackTrace();
-					}
-				}
-				
-				if(!threadStillRunning)
-				{
-					new Thread()
-					{
-						public void run()
-						{
-							threadStillRunning=true;
-							lastMove = getMove(game,timeDue);
-							hasComputed=true;
-							threadStillRunning=false;
-						}
-					}.start();
-				}
-				
-				wasSignalled=false;
+				//update() and terminate() unpark the worker after changing the state checked here
+				LockSupport.park(this);
+				continue;
 			}
+
+			try
+			{
+				lastMove=getMove(request.game,request.timeDue);
+			}
+			catch(RuntimeException e)
+			{
+				//keep the worker alive: the previous move is played instead
+				e.printStackTrace();
+			}
+
+			latencies.record(System.nanoTime()-request.postedAt,isLate(request.timeDue));
+			computed=request.sequence;
+			LockSupport.unpark(waiter);
 		}
+
+		worker=null;
 	}
-	
+
 	/**
 	 * This method is used to check whether the controller computed a move since the last
 	 * update of the game.
-	 * 
+	 *
 	 * @return Whether or not the controller computed a move since the last update
 	 */
 	public final boolean hasComputed()
 	{
-		return hasComputed;
+		return computed==posted;
+	}
+
+	/**
+	 * Waits until the controller has computed a move for the last game posted or until the
+	 * deadline has passed, whichever comes first. The worker wakes the waiting thread up as soon
+	 * as it has stored the move, so there is no polling involved. Only one thread may wait at a
+	 * time.
+	 *
+	 * @param deadline The latest time to wait until, in terms of System.nanoTime()
+	 * @return Whether or not the controller computed a move since the last update
+	 */
+	public final boolean waitForMove(long deadline)
+	{
+		waiter=Thread.currentThread();
+
+		try
+		{
+			//the worker sets 'computed' before reading 'waiter', so either it sees us or we see the move
+			while(!hasComputed())
+			{
+				long remaining=deadline-System.nanoTime();
+
+				if(remaining<=0)
+					return false;
+
+				LockSupport.parkNanos(this,remaining);
+			}
+
+			return true;
+		}
+		finally
+		{
+			waiter=null;
+		}
+	}
+
+	/**
+	 * Computes a move on the calling thread, recording the time taken in the latency histogram.
+	 * This is how the synchronous modes of the Executor obtain a move.
+	 *
+	 * @param game A read-only snapshot of the current game
+	 * @param timeDue The time the next move is due (or -1 if there is no time limit)
+	 * @return The move computed by getMove()
+	 */
+	public final T computeMove(ReadOnlyGame game,long timeDue)
+	{
+		long start=System.nanoTime();
+		T move=getMove(game,timeDue);
+		latencies.record(System.nanoTime()-start,isLate(timeDue));
+
+		return move;
+	}
+
+	/**
+	 * Returns the histogram of the time taken by this controller to reply, along with the
+	 * number of replies that were not stored by the time they were due. It should be read once
+	 * the game is over: the histogram is written by the thread computing the moves.
+	 *
+	 * @return The latency histogram of this controller
+	 */
+	public final LatencyHistogram getLatencies()
+	{
+		return latencies;
 	}
 
 	/**
-	 * Compute the next move given a copy of the current game and a time the move has to be computed by.
+	 * Returns the number of time steps at which the Executor retrieved the move (see getMove())
+	 * before the controller had replied to the last game posted, and thus played an earlier move.
+	 * Unlike the late replies counted by the latency histogram, this includes the games that were
+	 * replaced in the mailbox before the worker got to them.
+	 *
+	 * @return The number of missed moves
+	 */
+	public final long getMissedMoves()
+	{
+		return missed;
+	}
+
+	/**
+	 * Discards the latencies and missed moves recorded so far. Must not be called while the
+	 * controller is running.
+	 */
+	public final void resetLatencies()
+	{
+		latencies.reset();
+		missed=0;
+	}
+
+	//whether getMove(Game,long) is overridden by the subclass, see getMove(ReadOnlyGame,long)
+	private boolean implementsLegacyGetMove()
+	{
+		try
+		{
+			return getClass().getMethod("getMove",Game.class,long.class).getDeclaringClass()!=Controller.class;
+		}
+		catch(NoSuchMethodException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+
+	//a reply is late if it arrives after the time it is due (if any)
+	private static boolean isLate(long timeDue)
+	{
+		return timeDue>=0&&System.currentTimeMillis()>timeDue;
+	}
+
+	/**
+	 * Compute the next move given a snapshot of the current game and a time the move has to be computed by.
 	 * This is the method contestants need to implement. Many examples are available in
 	 * 			pacman.controllers.examples
 	 * Your controllers must be in the files: pacman.entries.pacman.MyPacMan.java for Pac-Man controllers or
 	 * pacman.entries.ghosts.MyGhosts.java for ghosts controllers.
 	 *
-	 * @param game A copy of the current game
-	 * @param timeDue The time the next move is due
+	 * The game received is a read-only snapshot that the other controller and the view may be reading
+	 * at the same time: it cannot be advanced. To simulate ahead, call game.copy() (or use a GamePool)
+	 * to obtain a game of your own. The Executor hands out a new snapshot every time step and never
+	 * changes one it has handed out, so a controller may keep the games it receives.
+	 *
+	 * Controllers written against earlier versions override getMove(Game,long) instead: unless it is
+	 * overridden, this method passes the snapshot on to that one. A controller has to override one of
+	 * the two.
+	 *
+	 * @param game A read-only snapshot of the current game
+	 * @param timeDue The time the next move is due (or -1 if there is no time limit)
 	 * @return The move to be played (i.e., the move calculated by your controller)
 	 */
-	public abstract T getMove(Game game,long timeDue);
+	public T getMove(ReadOnlyGame game,long timeDue)
+	{
+		if(!legacy)
+			throw new UnsupportedOperationException(getClass().getName()+" must override getMove(ReadOnlyGame,long)");
+
+		//Game is the only implementation of ReadOnlyGame; the copy is a fallback for any other
+		return getMove(game instanceof Game ? (Game)game : game.copy(),timeDue);
+	}
+
+	/**
+	 * Compute the next move given a snapshot of the current game, typed as a Game. The snapshot
+	 * still cannot be advanced: calling a method that changes it throws an IllegalStateException.
+	 * Unless it is overridden, this method passes the game on to getMove(ReadOnlyGame,long), so
+	 * code that still calls it works with controllers implementing either method.
+	 *
+	 * @deprecated Override and call getMove(ReadOnlyGame,long) instead, which only offers the
+	 * queries that may be made on a snapshot.
+	 *
+	 * @param game A read-only snapshot of the current game
+	 * @param timeDue The time the next move is due (or -1 if there is no time limit)
+	 * @return The move to be played (i.e., the move calculated by your controller)
+	 */
+	@Deprecated
+	public T getMove(Game game,long timeDue)
+	{
+		ReadOnlyGame view=game;
+
+		return getMove(view,timeDue);
+	}
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package pacman.controllers;
 
 import java.awt.event.KeyEvent;
-import pacman.game.Game;
+import pacman.game.ReadOnlyGame;
 import pacman.game.Constants.MOVE;
 
 /*
@@ -21,7 +21,7 @@ public class HumanController extends Controller<MOVE>
     	return input;
     }
 
-    public MOVE getMove(Game game,long dueTime)
+    public MOVE getMove(ReadOnlyGame game,long dueTime)
     {
     	switch(input.getKey())
     	{
@@ -0,0 +1,167 @@
+package pacman.controllers;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of the time a controller takes to reply, along with the number of replies that
+ * were late. The buckets are fixed and allocated up-front, so recording a reply costs a few
+ * arithmetic operations and never allocates: values below 128ns each have a bucket of their own,
+ * and beyond that every power of two is split into 64 buckets, which keeps the error of any
+ * percentile reported below 1.6%. Values below 2^41ns (about 36 minutes) are told apart,
+ * anything larger is counted in the last bucket. The exact maximum is kept separately.
+ *
+ * A histogram is not thread-safe: it must be written by one thread at a time, and read once the
+ * thread writing it is done (or else the replies recorded last may be missing).
+ */
+public final class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS=6;
+	private static final int SUB_BUCKETS=1<<SUB_BUCKET_BITS;
+	private static final int MAX_BIT=40;
+	private static final int NUM_BUCKETS=(MAX_BIT-SUB_BUCKET_BITS+2)*SUB_BUCKETS;
+
+	private final long[] counts;
+	private long total,late,max;
+
+	/**
+	 * Instantiates a new, empty histogram.
+	 */
+	public LatencyHistogram()
+	{
+		counts=new long[NUM_BUCKETS];
+	}
+
+	/**
+	 * Records a reply.
+	 *
+	 * @param latency The time taken to reply, in nanoseconds
+	 * @param late Whether or not the reply arrived after it was due
+	 */
+	public void record(long latency,boolean late)
+	{
+		latency=Math.max(0,latency);
+
+		counts[bucketOf(latency)]++;
+		total++;
+		max=Math.max(max,latency);
+
+		if(late)
+			this.late++;
+	}
+
+	/**
+	 * Adds the replies recorded by another histogram to this one (e.g., to report on all the
+	 * controllers of a parallel experiment at once).
+	 *
+	 * @param other The histogram to add
+	 */
+	public void add(LatencyHistogram other)
+	{
+		for(int i=0;i<NUM_BUCKETS;i++)
+			counts[i]+=other.counts[i];
+
+		total+=other.total;
+		late+=other.late;
+		max=Math.max(max,other.max);
+	}
+
+	/**
+	 * Discards all replies recorded so far.
+	 */
+	public void reset()
+	{
+		Arrays.fill(counts,0);
+		total=late=max=0;
+	}
+
+	/**
+	 * Returns the number of replies recorded.
+	 *
+	 * @return the number of replies
+	 */
+	public long getCount()
+	{
+		return total;
+	}
+
+	/**
+	 * Returns the number of replies that arrived after they were due.
+	 *
+	 * @return the number of late replies
+	 */
+	public long getLateCount()
+	{
+		return late;
+	}
+
+	/**
+	 * Returns the longest time taken to reply.
+	 *
+	 * @return the maximum latency in nanoseconds, or 0 if no reply has been recorded
+	 */
+	public long getMax()
+	{
+		return max;
+	}
+
+	/**
+	 * Returns the latency that the given percentage of the replies did not exceed. The value is
+	 * the upper end of the bucket the percentile falls into, but never more than the maximum.
+	 *
+	 * @param percentile The percentage of replies (between 0 and 100)
+	 * @return the latency in nanoseconds, or 0 if no reply has been recorded
+	 */
+	public long getPercentile(double percentile)
+	{
+		if(total==0)
+			return 0;
+
+		long rank=Math.max(1,(long)Math.ceil(percentile/100*total));
+		long seen=0;
+
+		for(int i=0;i<NUM_BUCKETS;i++)
+		{
+			seen+=counts[i];
+
+			if(seen>=rank)
+				return Math.min(max,lowestValueOf(i+1)-1);
+		}
+
+		return max;
+	}
+
+	/**
+	 * Summarises the histogram: the number of replies, the 50th, 99th and 99.9th percentiles
+	 * and the maximum latency (in milliseconds), and the number of late replies.
+	 */
+	public String toString()
+	{
+		return String.format("%d replies, p50 %.3fms, p99 %.3fms, p99.9 %.3fms, max %.3fms, %d late",total,
+				getPercentile(50)/1e6,getPercentile(99)/1e6,getPercentile(99.9)/1e6,max/1e6,late);
+	}
+
+	//values below 2*SUB_BUCKETS map onto themselves; larger ones keep their SUB_BUCKET_BITS+1 highest bits
+	private static int bucketOf(long value)
+	{
+		if(value<2*SUB_BUCKETS)
+			return (int)value;
+
+		int shift=63-Long.numberOfLeadingZeros(value)-SUB_BUCKET_BITS;
+
+		if(shift>MAX_BIT-SUB_BUCKET_BITS)
+			return NUM_BUCKETS-1;
+
+		return shift*SUB_BUCKETS+(int)(value>>>shift);
+	}
+
+	//the smallest value that falls into the bucket given (the inverse of bucketOf())
+	private static long lowestValueOf(int bucket)
+	{
+		if(bucket<2*SUB_BUCKETS)
+			return bucket;
+
+		int shift=bucket/SUB_BUCKETS-1;
+
+		return (long)(bucket%SUB_BUCKETS+SUB_BUCKETS)<<shift;
+	}
+}
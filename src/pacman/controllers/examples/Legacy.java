@@ -3,7 +3,7 @@ package pacman.controllers.examples;
 import java.util.EnumMap;
 import java.util.Random;
 import pacman.controllers.Controller;
-import pacman.game.Game;
+import pacman.game.ReadOnlyGame;
 
 import static pacman.game.Constants.*;
 
@@ -16,7 +16,7 @@ public class Legacy extends Controller<EnumMap<GHOST,MOVE>>
 	EnumMap<GHOST,MOVE> myMoves=new EnumMap<GHOST,MOVE>(GHOST.class);
 	MOVE[] moves=MOVE.values();
 	
-	public EnumMap<GHOST,MOVE> getMove(Game game,long timeDue)
+	public EnumMap<GHOST,MOVE> getMove(ReadOnlyGame game,long timeDue)
 	{
 		myMoves.clear();
 		
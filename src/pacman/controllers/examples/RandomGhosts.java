@@ -4,7 +4,7 @@ import java.util.EnumMap;
 import java.util.Random;
 import pacman.game.Constants.GHOST;
 import pacman.game.Constants.MOVE;
-import pacman.game.Game;
+import pacman.game.ReadOnlyGame;
 import pacman.controllers.Controller;
 
 /*
@@ -16,7 +16,7 @@ public final class RandomGhosts extends Controller<EnumMap<GHOST,MOVE>>
 	private MOVE[] allMoves=MOVE.values();
 	private Random rnd=new Random();
 	
-	public EnumMap<GHOST,MOVE> getMove(Game game,long timeDue)
+	public EnumMap<GHOST,MOVE> getMove(ReadOnlyGame game,long timeDue)
 	{	
 		moves.clear();
 		
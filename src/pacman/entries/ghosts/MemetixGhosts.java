@@ -9,6 +9,8 @@ import java.util.HashSet;
 import java.util.Random;
 import pacman.controllers.Controller;
 import pacman.game.Game;
+import pacman.game.GamePool;
+import pacman.game.ReadOnlyGame;
 import pacman.game.GameView;
 import pacman.game.Constants.GHOST;
 import pacman.game.Constants.MOVE;
@@ -35,13 +37,14 @@ public class MemetixGhosts extends Controller<EnumMap<GHOST,MOVE>> {
 	}
 	
 	private Game 			game;
+	private final GamePool	pool = new GamePool();	//recycles the copies made by safeAdvance
 	private nodeInfo[]		nodes;	//Information about the distance to this node for the pacman and ghosts
 	private boolean []		safe;	//The status of each node - safe (for the pacman) = true
 	private int				safeScore; //How many points are available in the safe zone
 	private static final Random			rnd = new Random();
 	private static final int			MAX_DISTANCE = 10;	//How many moves to look ahead
 	
-	public EnumMap<GHOST,MOVE> getMove(Game game,long timeDue)
+	public EnumMap<GHOST,MOVE> getMove(ReadOnlyGame game,long timeDue)
 	{
 		EnumMap<GHOST,MOVE> myMoves=new EnumMap<GHOST,MOVE>(GHOST.class);
 		double best = Double.MAX_VALUE;
@@ -68,6 +71,8 @@ public class MemetixGhosts extends Controller<EnumMap<GHOST,MOVE>> {
 				 */
 				double highest = -1;
 				for (MOVE pacman: game.getPossibleMoves(game.getPacmanCurrentNodeIndex())) {					
+					if (this.game != null)
+						pool.release(this.game);
 					this.game = safeAdvance(game, pacman, testMoves);		
 					
 					double score = rnd.nextDouble();
@@ -104,7 +109,7 @@ public class MemetixGhosts extends Controller<EnumMap<GHOST,MOVE>> {
 	 * Advance the game state with the given set of moves
 	 * Check for global reverses and try again if one occurs
 	 */
-	private Game safeAdvance(Game game, MOVE pacman, EnumMap<GHOST,MOVE> testMoves) {
+	private Game safeAdvance(ReadOnlyGame game, MOVE pacman, EnumMap<GHOST,MOVE> testMoves) {
 		Game result = null;
 		boolean reversed = true;
 		/*
@@ -120,7 +125,9 @@ public class MemetixGhosts extends Controller<EnumMap<GHOST,MOVE>> {
 			}
 		
 		while (reversed) {
-			result = game.copy();
+			if (result != null)
+				pool.release(result);
+			result = pool.copyOf(game, rnd.nextLong()); //fresh seed, otherwise a reversal would repeat on every retry
 			result.advanceGame(pacman, testMoves);			
 			reversed = (!result.gameOver() && toCheck != null &&
 					result.getGhostLastMoveMade(toCheck) == game.getGhostLastMoveMade(toCheck).opposite() &&
@@ -134,7 +141,7 @@ public class MemetixGhosts extends Controller<EnumMap<GHOST,MOVE>> {
 	/*
 	 * Try to work out if the pacman was eaten
 	 */
-	private boolean wasEaten(Game before, Game after) {
+	private boolean wasEaten(ReadOnlyGame before, Game after) {
 		if (after.gameOver())
 			return true;
 		if (after.getPacmanNumberOfLivesRemaining() < before.getPacmanNumberOfLivesRemaining())
@@ -325,15 +332,15 @@ public class MemetixGhosts extends Controller<EnumMap<GHOST,MOVE>> {
 		 * Add in score for power pills
 		 */
 		boolean containsPowerPill = false;
-		for (int pp: game.getActivePowerPillsIndices())
-			if (safe[pp])
+		for (int i = 0; i < game.getNumberOfActivePowerPills(); i++)
+			if (safe[game.getActivePowerPillNodeIndex(i)])
 				containsPowerPill = true;
 		
 		if (containsPowerPill)
 			score += 10000;
 		
-		for (int p: game.getActivePillsIndices())
-			if (safe[p])
+		for (int i = 0; i < game.getNumberOfActivePills(); i++)
+			if (safe[game.getActivePillNodeIndex(i)])
 				score += PILL;
 		
 		/*
@@ -358,8 +365,8 @@ public class MemetixGhosts extends Controller<EnumMap<GHOST,MOVE>> {
 	
 	
 	private boolean isPowerPill(int node) {
-		for (int pp: game.getActivePowerPillsIndices())
-			if (pp == node)
+		for (int i = 0; i < game.getNumberOfActivePowerPills(); i++)
+			if (game.getActivePowerPillNodeIndex(i) == node)
 				return true;
 		return false;
 	}
@@ -7,7 +7,7 @@ import java.util.NoSuchElementException;
 
 import pacman.game.Constants.GHOST;
 import pacman.game.Constants.MOVE;
-import pacman.game.Game;
+import pacman.game.ReadOnlyGame;
 
 	/*
 	 * An iterator over the valid moves each ghost has
@@ -20,7 +20,7 @@ public class MoveIterator implements Iterator<MOVE[]>
 	private long totalPerms;
 	private long counter = 0;
 	
-	public MoveIterator(Game game) {
+	public MoveIterator(ReadOnlyGame game) {
 		options = new MOVE[NUM_GHOSTS][];
 		MOVE[] nothing = { MOVE.NEUTRAL };
 				
@@ -4,7 +4,7 @@ import java.util.EnumMap;
 import pacman.controllers.Controller;
 import pacman.game.Constants.GHOST;
 import pacman.game.Constants.MOVE;
-import pacman.game.Game;
+import pacman.game.ReadOnlyGame;
 
 /*
  * This is the class you need to modify for your entry. In particular, you need to
@@ -15,7 +15,7 @@ public class MyGhosts extends Controller<EnumMap<GHOST,MOVE>>
 {
 	private EnumMap<GHOST, MOVE> myMoves=new EnumMap<GHOST, MOVE>(GHOST.class);
 	
-	public EnumMap<GHOST, MOVE> getMove(Game game, long timeDue)
+	public EnumMap<GHOST, MOVE> getMove(ReadOnlyGame game, long timeDue)
 	{
 		myMoves.clear();
 		
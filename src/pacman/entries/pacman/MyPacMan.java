@@ -2,7 +2,7 @@ package pacman.entries.pacman;
 
 import pacman.controllers.Controller;
 import pacman.game.Constants.MOVE;
-import pacman.game.Game;
+import pacman.game.ReadOnlyGame;
 
 /*
  * This is the class you need to modify for your entry. In particular, you need to
@@ -13,7 +13,7 @@ public class MyPacMan extends Controller<MOVE>
 {
 	private MOVE myMove=MOVE.NEUTRAL;
 
-	public MOVE getMove(Game game, long timeDue)
+	public MOVE getMove(ReadOnlyGame game, long timeDue)
 	{
 		//Place your game logic here to play the game as Ms Pac-Man
 
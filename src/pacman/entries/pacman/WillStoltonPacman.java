@@ -6,6 +6,8 @@ import pacman.game.Constants.GHOST;
 import pacman.game.Constants.DM;
 import pacman.game.Constants.MOVE;
 import pacman.game.Game;
+import pacman.game.GamePool;
+import pacman.game.ReadOnlyGame;
 import pacman.game.GameView;
 import java.awt.*;
 import java.util.*;
@@ -32,6 +34,7 @@ public class WillStoltonPacman extends Controller<MOVE> {
     private Set<Integer> visited;
     private GHOST ghostTarget;
     private MOVE chosenMove;
+    private final GamePool pool = new GamePool();
 
     /**
      * Main AI logic. Avoid the lair or other ghosts, then chase edible ghosts and finally
@@ -41,7 +44,7 @@ public class WillStoltonPacman extends Controller<MOVE> {
      * @param timeDue The time the next move is due
      * @return the move for the AI to follow
      */
-    public MOVE getMove(Game game, long timeDue) {
+    public MOVE getMove(ReadOnlyGame game, long timeDue) {
         // We'll need these throughout so make them now.
         int msPLocation = game.getPacmanCurrentNodeIndex();
         GHOST[] ghosts = GHOST.values();
@@ -118,12 +121,12 @@ public class WillStoltonPacman extends Controller<MOVE> {
     }
 
 
-    private MOVE tryMe(Game game, int msPLocation){
+    private MOVE tryMe(ReadOnlyGame game, int msPLocation){
         Map<Integer, MOVE> scoreAndRoute = new HashMap<>();
         int counter = 0;
         RandomPacMan rpm = new RandomPacMan();
         for(MOVE move : game.getPossibleMoves(msPLocation)){
-            Game future = game.copy();
+            Game future = pool.copyOf(game);
             counter = Integer.MIN_VALUE;
             int round = 0;
             boolean eaten = false;
@@ -134,7 +137,7 @@ public class WillStoltonPacman extends Controller<MOVE> {
                 }
                 round += 1;
                 counter = counter + future.getScore();
-                future.updatePacMan(rpm.getMove(future, System.currentTimeMillis()));
+                future.updatePacMan(rpm.getMove((ReadOnlyGame) future, System.currentTimeMillis()));
                 future.updateGame();
             }
             if(!eaten) {
@@ -144,6 +147,7 @@ public class WillStoltonPacman extends Controller<MOVE> {
                     counter = temp;
                 }
             }
+            pool.release(future);
         }
         return scoreAndRoute.get(counter);
     }
@@ -157,19 +161,10 @@ public class WillStoltonPacman extends Controller<MOVE> {
      * @param ghosts array of ghosts
      * @return true if path clear, false if not.
      */
-    private boolean check(Game game, int[] edibles, int msPLocation, GHOST[] ghosts) {
+    private boolean check(ReadOnlyGame game, int[] edibles, int msPLocation, GHOST[] ghosts) {
         int target = game.getClosestNodeIndexFromNodeIndex(msPLocation, edibles, DM.PATH);
-        int[] path = game.getShortestPath(msPLocation, target);
 
-        boolean youShallNotPass = false;
-        for (int i = 0; (i < path.length) && !youShallNotPass; i++) {
-            for (GHOST ghost : ghosts) {
-                if (path[i] == game.getGhostCurrentNodeIndex(ghost) && !game.isGhostEdible(ghost)) {
-                    youShallNotPass = true;
-                    break;
-                }
-            }
-        }
+        boolean youShallNotPass = !game.forEachNodeOnPath(msPLocation, target, node -> isPassable(game, node, ghosts));
         // if no ghost in the way
         if (!youShallNotPass) {
             GameView.addPoints(game, Color.MAGENTA, game.getShortestPath(msPLocation, target));
@@ -189,19 +184,11 @@ public class WillStoltonPacman extends Controller<MOVE> {
      * @param game game object
      * @return true if path clear, false if not.
      */
-    private boolean check(GHOST ghostToEat, Game game) {
+    private boolean check(GHOST ghostToEat, ReadOnlyGame game) {
         int target = game.getGhostCurrentNodeIndex(ghostToEat);
         int msPLocation = game.getPacmanCurrentNodeIndex();
-        int[] path = game.getShortestPath(game.getPacmanCurrentNodeIndex(), target);
-        boolean youShallNotPass = false;
-        for (int i = 0; (i < path.length) && !youShallNotPass; i++) {
-            for (GHOST ghost : GHOST.values()) {
-                if (path[i] == game.getGhostCurrentNodeIndex(ghost) && !game.isGhostEdible(ghost)) {
-                    youShallNotPass = true;
-                    break;
-                }
-            }
-        }
+        GHOST[] ghosts = GHOST.values();
+        boolean youShallNotPass = !game.forEachNodeOnPath(msPLocation, target, node -> isPassable(game, node, ghosts));
         // if no ghost in the way
         if (!youShallNotPass) {
             GameView.addPoints(game, Color.MAGENTA, game.getShortestPath(msPLocation, target));
@@ -215,45 +202,51 @@ public class WillStoltonPacman extends Controller<MOVE> {
     }
 
 
+    /**
+     * Check that no inedible ghost is standing on a node
+     * @param game game object
+     * @param node node on the path
+     * @param ghosts array of ghosts
+     * @return true if the node is free, false if not.
+     */
+    private static boolean isPassable(ReadOnlyGame game, int node, GHOST[] ghosts) {
+        for (GHOST ghost : ghosts) {
+            if (node == game.getGhostCurrentNodeIndex(ghost) && !game.isGhostEdible(ghost)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
     /////////////////////////////////////////////////////////////////////////////
     /////////////////  Create and build arrays and stuff  ///////////////////////
     /////////////////////////////////////////////////////////////////////////////
 
 
     /**
-     * Get the index of active pills still in play
+     * Check whether there is a pill still in play at a location
      *
-     * @param game game object
-     * @return arraylist of pill locations
+     * @param game  game object
+     * @param index node index
+     * @return true if an active pill is at the location
      */
-    private ArrayList<Integer> pills(Game game) {
-        ArrayList<Integer> allPills = new ArrayList<>();
-        int[] pills = game.getPillIndices();
-        for (int i = 0; i < pills.length; i++) {
-            if (game.isPillStillAvailable(i)) {
-                allPills.add(pills[i]);
-            }
-        }
-        return allPills;
+    private static boolean isActivePill(ReadOnlyGame game, int index) {
+        int pill = game.getPillIndex(index);
+        return pill >= 0 && game.isPillStillAvailable(pill);
     }
 
 
     /**
-     * Get the index of active power pills still in play
+     * Check whether there is a power pill still in play at a location
      *
-     * @param game game object
-     * @return arraylist of power pill locations
+     * @param game  game object
+     * @param index node index
+     * @return true if an active power pill is at the location
      */
-    private ArrayList<Integer> powerPills(Game game) {
-        ArrayList<Integer> allPills = new ArrayList<>();
-        int[] powerPills = game.getPowerPillIndices();
-
-        for (int i = 0; i < powerPills.length; i++) {
-            if (game.isPowerPillStillAvailable(i)) {
-                allPills.add(powerPills[i]);
-            }
-        }
-        return allPills;
+    private static boolean isActivePowerPill(ReadOnlyGame game, int index) {
+        int powerPill = game.getPowerPillIndex(index);
+        return powerPill >= 0 && game.isPowerPillStillAvailable(powerPill);
     }
 
 
@@ -263,7 +256,7 @@ public class WillStoltonPacman extends Controller<MOVE> {
      * @param game game object
      * @return arraylist of ghost locations
      */
-    private ArrayList<Integer> nonEdibleGhosts(Game game) {
+    private ArrayList<Integer> nonEdibleGhosts(ReadOnlyGame game) {
         ArrayList<Integer> ghosts = new ArrayList<>();
         for (GHOST ghost : GHOST.values()) {
             if (!game.isGhostEdible(ghost))
@@ -279,7 +272,7 @@ public class WillStoltonPacman extends Controller<MOVE> {
      * @param game game object
      * @return arraylist of ghost locations
      */
-    private ArrayList<Integer> edibleGhosts(Game game) {
+    private ArrayList<Integer> edibleGhosts(ReadOnlyGame game) {
         ArrayList<Integer> ghosts = new ArrayList<>();
         for (GHOST ghost : GHOST.values()) {
             if (game.isGhostEdible(ghost)) {
@@ -296,16 +289,14 @@ public class WillStoltonPacman extends Controller<MOVE> {
      * @param msPLocation index of mrs p
      * @param game        game object
      */
-    private void buildTree(int msPLocation, Game game) {
+    private void buildTree(int msPLocation, ReadOnlyGame game) {
         tree = new Tree();
         Node root = new Node(msPLocation);
         tree.setRoot(root);
         visited = new HashSet<>();
         ArrayList<Integer> ghosts = nonEdibleGhosts(game);
         ArrayList<Integer> edibleGhosts = edibleGhosts(game);
-        ArrayList<Integer> pills = pills(game);
-        ArrayList<Integer> powerPills = powerPills(game);
-        buildTree(root, game, ghosts, edibleGhosts, pills, powerPills);
+        buildTree(root, game, ghosts, edibleGhosts);
     }
 
 
@@ -315,10 +306,8 @@ public class WillStoltonPacman extends Controller<MOVE> {
      * @param parent     parent node object
      * @param game       game object
      * @param ghosts     list of ghost locations
-     * @param pills      list of pill locations
-     * @param powerPills list of powerpill locations
      */
-    private void buildTree(Node parent, Game game, ArrayList<Integer> ghosts, ArrayList<Integer> edibleGhosts, ArrayList<Integer> pills, ArrayList<Integer> powerPills) {
+    private void buildTree(Node parent, ReadOnlyGame game, ArrayList<Integer> ghosts, ArrayList<Integer> edibleGhosts) {
         int index = parent.getIndex();
         if (!visited.contains(index)) {
             visited.add(index);
@@ -326,9 +315,9 @@ public class WillStoltonPacman extends Controller<MOVE> {
                 parent.setScore(-200);
             } else if (edibleGhosts.contains(index)) {
                 parent.setScore(200);
-            } else if (powerPills.contains(index)) {
+            } else if (isActivePowerPill(game, index)) {
                 parent.setScore(50);
-            } else if (pills.contains(index)) {
+            } else if (isActivePill(game, index)) {
                 parent.setScore(10);
             } else {
                 parent.setScore(1);
@@ -337,7 +326,7 @@ public class WillStoltonPacman extends Controller<MOVE> {
             for (int child : children) {
                 Node newNode = new Node(child);
                 parent.addChild(newNode);
-                buildTree(newNode, game, ghosts, edibleGhosts, pills, powerPills);
+                buildTree(newNode, game, ghosts, edibleGhosts);
             }
         }
     }
@@ -347,12 +336,12 @@ public class WillStoltonPacman extends Controller<MOVE> {
      * @param game game object
      * @return list of all pills, powerpills and edible ghosts
      */
-    private int[] getAllEdibles(Game game) {
-        ArrayList<Integer> pills = pills(game);
-        ArrayList<Integer> powerPills = powerPills(game);
+    private int[] getAllEdibles(ReadOnlyGame game) {
+        int[] pills = game.getActivePillsIndices();
+        int[] powerPills = game.getActivePowerPillsIndices();
         ArrayList<Integer> edibleGhostLocs = edibleGhosts(game);
-        int pSize = pills.size();
-        int ppSize = powerPills.size();
+        int pSize = pills.length;
+        int ppSize = powerPills.length;
         int gSize = edibleGhostLocs.size();
         int[] allEdibles = new int[pSize + ppSize + gSize];
 
@@ -360,10 +349,10 @@ public class WillStoltonPacman extends Controller<MOVE> {
             allEdibles[i] = edibleGhostLocs.get(i);
         }
         for (int i = 0; i < ppSize; i++) {
-            allEdibles[i + gSize] = powerPills.get(i);
+            allEdibles[i + gSize] = powerPills[i];
         }
         for (int i = 0; i < pSize; i++) {
-            allEdibles[i + gSize + ppSize] = pills.get(i);
+            allEdibles[i + gSize + ppSize] = pills[i];
         }
         return allEdibles;
     }
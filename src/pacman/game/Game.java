@@ -1,18 +1,24 @@
 package pacman.game;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.EnumMap;
-import java.util.Random;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
 import java.util.Map.Entry;
 import pacman.game.Constants.DM;
 import pacman.game.Constants.MOVE;
-import pacman.game.internal.Ghost;
+import pacman.game.internal.ActivePills;
+import pacman.game.internal.CorridorGraph;
+import pacman.game.internal.GameRandom;
 import pacman.game.internal.Maze;
-import pacman.game.internal.Node;
+import pacman.game.internal.Mazes;
 import pacman.game.internal.PacMan;
-import pacman.game.internal.PathsCache;
+import pacman.game.internal.TargetsByDistance;
 
 import static pacman.game.Constants.*;
+import static pacman.game.internal.Maze.NUM_MOVES;
 
 /**
  * The implementation of Ms Pac-Man. This class contains the game engine and all methods required to
@@ -34,46 +40,58 @@ import static pacman.game.Constants.*;
  * a low error rate. The latter takes a bit longer but is absolutely accurate. We use the pre-computed shortest
  * path distances as admissable heuristic so it is very efficient.
  */
-public final class Game
+public final class Game implements ReadOnlyGame
 {
 	//pills stored as bitsets for efficient copying
 	private BitSet pills, powerPills;
+	//the same pills as dense lists, so the active ones can be enumerated without scanning the bitsets
+	private ActivePills activePills, activePowerPills;
+	//number of pills and power pills left in each corridor of the maze (see CorridorGraph)
+	private int[] corridorPills, corridorPowerPills;
 	//all the game's variables
 	private int mazeIndex, levelCount, currentLevelTime, totalTime, score, ghostEatMultiplier, timeOfLastGlobalReversal;	
 	private boolean gameOver, pacmanWasEaten, pillWasEaten, powerPillWasEaten;
-	private EnumMap<GHOST,Boolean> ghostsEaten;
-	//the data relating to pacman and the ghosts are stored in respective data structures for clarity
+	//the data relating to pacman is stored in its own data structure for clarity
 	private PacMan pacman;
-	private EnumMap<GHOST, Ghost> ghosts;
+	//the data relating to the ghosts is stored as parallel arrays indexed by GHOST.ordinal(): this avoids
+	//enum look-ups on every access and makes copying cheap. Ghosts eaten in the last time step are bits of a mask.
+	private int[] ghostNodeIndex, ghostEdibleTime, ghostLairTime;
+	private byte[] ghostLastMove;
+	private int ghostsEatenMask;
+	
+	private static final MOVE[] MOVES=MOVE.values();
+	private static final GHOST[] GHOSTS=GHOST.values();
 
-	//mazes are only loaded once since they don't change over time
-	private static Maze[] mazes=new Maze[NUM_MAZES];;
-	
+	//mazes and their path caches are loaded on first use only and shared by all games (see Mazes)
 	private Maze currentMaze;
 	
-	static 
-	{
-		for(int i=0;i<mazes.length;i++)
-			mazes[i]=new Maze(i);
-	}
-	
-	public static PathsCache[] caches=new PathsCache[NUM_MAZES];
+	private GameRandom rnd;
+	private long seed;	
+	//snapshots (see snapshot()) refuse to be updated
+	private boolean isSnapshot;
 	
-	static 
-	{
-		for(int i=0;i<mazes.length;i++)
-		{
-			caches[i]=new PathsCache(i);
-		}
-	}
+	//undo journal, only allocated once enableJournal() has been called (see undo())
+	private int[] journal, journalFrames;
+	private BitSet[] journalPills;
+	private ActivePills[] journalActivePills;
+	private int journalSize, numJournalFrames, journalDepth;
 	
-	private Random rnd;
-	private long seed;	
+	private static final int JOURNAL_HEADER=13+4*NUM_GHOSTS;
 	
 	/////////////////////////////////////////////////////////////////////////////
 	///////////////////  Constructors and initialisers  /////////////////////////
 	/////////////////////////////////////////////////////////////////////////////
 	
+	/**
+	 * Loads all mazes and pre-computes their paths caches, using all available cores. Otherwise
+	 * each maze is loaded the first time a game reaches it. Calling this up-front is worthwhile
+	 * when many games will be played, as they will eventually visit all the mazes.
+	 */
+	public static void precomputeMazes()
+	{
+		Mazes.precomputeAll();
+	}
+	
 	/**
 	 * Instantiates a new game. The seed is used to initialise the pseudo-random
 	 * number generator. This way, a game may be replicated exactly by using identical
@@ -85,7 +103,7 @@ public final class Game
 	public Game(long seed)
 	{		
 		this.seed=seed;
-		rnd=new Random(seed);
+		rnd=new GameRandom(seed);
 		
 		_init(0);
 	}
@@ -99,7 +117,7 @@ public final class Game
 	public Game(long seed,int initialMaze)
 	{						
 		this.seed=seed;
-		rnd=new Random(seed);
+		rnd=new GameRandom(seed);
 		
 		_init(initialMaze);		
 	}
@@ -124,13 +142,14 @@ public final class Game
 		pacmanWasEaten=false;
 		pillWasEaten=false;
 		powerPillWasEaten=false;
+		ghostsEatenMask=0;
 		
-		ghostsEaten=new EnumMap<GHOST,Boolean>(GHOST.class);
-		
-		for(GHOST ghost : GHOST.values())
-			ghostsEaten.put(ghost,false);
+		ghostNodeIndex=new int[NUM_GHOSTS];
+		ghostEdibleTime=new int[NUM_GHOSTS];
+		ghostLairTime=new int[NUM_GHOSTS];
+		ghostLastMove=new byte[NUM_GHOSTS];
 		
-		_setPills(currentMaze=mazes[mazeIndex]);
+		_setPills(currentMaze=Mazes.getMaze(mazeIndex));
 		_initGhosts();
 		
 		pacman=new PacMan(currentMaze.initialPacManNodeIndex,MOVE.LEFT,NUM_LIVES,false);		
@@ -141,9 +160,19 @@ public final class Game
 	 */
 	private void _newLevelReset()
 	{
+		//the pill sets are replaced rather than refilled, so the journal only needs to keep the old ones
+		if(journalDepth>0)
+		{
+			journalPills[2*(numJournalFrames-1)]=pills;
+			journalPills[2*(numJournalFrames-1)+1]=powerPills;
+			journalActivePills[2*(numJournalFrames-1)]=activePills;
+			journalActivePills[2*(numJournalFrames-1)+1]=activePowerPills;
+			activePills=activePowerPills=null;
+		}
+		
 		mazeIndex=++mazeIndex%NUM_MAZES;
 		levelCount++;
-		currentMaze=mazes[mazeIndex];
+		currentMaze=Mazes.getMaze(mazeIndex);
 		
 		currentLevelTime=0;
 		ghostEatMultiplier=1;
@@ -176,6 +205,60 @@ public final class Game
 		pills.set(0,currentMaze.pillIndices.length);
 		powerPills=new BitSet(currentMaze.powerPillIndices.length);
 		powerPills.set(0,currentMaze.powerPillIndices.length);
+		_indexPills();
+	}
+	
+	/**
+	 * Rebuilds the lists of active pills and recounts the pills left in each corridor from the
+	 * pill sets (whenever these are replaced).
+	 */
+	private void _indexPills()
+	{
+		if(activePills==null || !activePills.belongsTo(currentMaze.pillIndices))
+		{
+			activePills=new ActivePills(currentMaze.pillIndices);
+			activePowerPills=new ActivePills(currentMaze.powerPillIndices);
+		}
+		
+		activePills.reset(pills);
+		activePowerPills.reset(powerPills);
+		
+		_countCorridorPills();
+	}
+	
+	/**
+	 * Recounts the pills left in each corridor from the pill sets.
+	 */
+	private void _countCorridorPills()
+	{
+		CorridorGraph corridors=currentMaze.getCorridorGraph();
+		
+		if(corridorPills==null || corridorPills.length!=corridors.getNumberOfCorridors())
+		{
+			corridorPills=new int[corridors.getNumberOfCorridors()];
+			corridorPowerPills=new int[corridors.getNumberOfCorridors()];
+		}
+		else
+		{
+			Arrays.fill(corridorPills,0);
+			Arrays.fill(corridorPowerPills,0);
+		}
+		
+		for(int i=pills.nextSetBit(0);i>=0 && i<currentMaze.pillIndices.length;i=pills.nextSetBit(i+1))
+		{
+			int corridor=corridors.getCorridorOfNode(currentMaze.pillIndices[i]);
+			
+			if(corridor>=0)
+				corridorPills[corridor]++;
+		}
+		
+		for(int i=powerPills.nextSetBit(0);i>=0 && i<currentMaze.powerPillIndices.length;i=powerPills.nextSetBit(i+1))
+		{
+			int corridor=corridors.getCorridorOfNode(currentMaze.powerPillIndices[i]);
+			
+			if(corridor>=0)
+				corridorPowerPills[corridor]++;
+		}
 	}
 	
 	/**
@@ -183,11 +266,15 @@ public final class Game
 	 */
 	private void _initGhosts()
 	{
-		ghosts=new EnumMap<GHOST, Ghost>(GHOST.class);
-					
-		for(GHOST ghostType : GHOST.values())
-			ghosts.put(ghostType,new Ghost(ghostType,currentMaze.lairNodeIndex,0,
-					(int)(ghostType.initialLairTime*(Math.pow(LAIR_REDUCTION,levelCount%LEVEL_RESET_REDUCTION))),MOVE.NEUTRAL));
+		for(GHOST ghostType : GHOSTS)
+		{
+			int g=ghostType.ordinal();
+			
+			ghostNodeIndex[g]=currentMaze.lairNodeIndex;
+			ghostEdibleTime[g]=0;
+			ghostLairTime[g]=(int)(ghostType.initialLairTime*(Math.pow(LAIR_REDUCTION,levelCount%LEVEL_RESET_REDUCTION)));
+			ghostLastMove[g]=(byte)MOVE.NEUTRAL.ordinal();
+		}
 	}
 
 	/**
@@ -205,8 +292,8 @@ public final class Game
 		sb.append(mazeIndex+","+totalTime+","+score+","+currentLevelTime+","+levelCount+","
 				+pacman.currentNodeIndex+","+pacman.lastMoveMade+","+pacman.numberOfLivesRemaining+","+pacman.hasReceivedExtraLife+",");
 
-		for(Ghost ghost : ghosts.values())
-			sb.append(ghost.currentNodeIndex+","+ghost.edibleTime+","+ghost.lairTime+","+ghost.lastMoveMade+",");
+		for(int g=0;g<NUM_GHOSTS;g++)
+			sb.append(ghostNodeIndex[g]+","+ghostEdibleTime[g]+","+ghostLairTime[g]+","+MOVES[ghostLastMove[g]]+",");
 
 		for(int i=0;i<currentMaze.pillIndices.length;i++)
 			if(pills.get(i))
@@ -230,7 +317,7 @@ public final class Game
 		
 		for(GHOST ghost : GHOST.values())
 		{
-			sb.append(ghostsEaten.get(ghost));
+			sb.append(wasGhostEaten(ghost));
 			sb.append(",");
 		}
 		
@@ -249,6 +336,8 @@ public final class Game
 	 */
 	public void setGameState(String gameState)
 	{	
+		_checkUpdatable();
+		
 		String[] values=gameState.split(",");
 		
 		int index=0;
@@ -262,13 +351,20 @@ public final class Game
 		pacman=new PacMan(Integer.parseInt(values[index++]),MOVE.valueOf(values[index++]),
 				Integer.parseInt(values[index++]),Boolean.parseBoolean(values[index++]));
 		
-		ghosts=new EnumMap<GHOST, Ghost>(GHOST.class);
+		ghostNodeIndex=new int[NUM_GHOSTS];
+		ghostEdibleTime=new int[NUM_GHOSTS];
+		ghostLairTime=new int[NUM_GHOSTS];
+		ghostLastMove=new byte[NUM_GHOSTS];
 		
-		for(GHOST ghostType : GHOST.values())
-			ghosts.put(ghostType,new Ghost(ghostType,Integer.parseInt(values[index++]),Integer.parseInt(values[index++]),
-					Integer.parseInt(values[index++]),MOVE.valueOf(values[index++])));
+		for(int g=0;g<NUM_GHOSTS;g++)
+		{
+			ghostNodeIndex[g]=Integer.parseInt(values[index++]);
+			ghostEdibleTime[g]=Integer.parseInt(values[index++]);
+			ghostLairTime[g]=Integer.parseInt(values[index++]);
+			ghostLastMove[g]=(byte)MOVE.valueOf(values[index++]).ordinal();
+		}
 			
-		_setPills(currentMaze=mazes[mazeIndex]);
+		_setPills(currentMaze=Mazes.getMaze(mazeIndex));
 		
 		for(int i=0;i<values[index].length();i++)
 			if(values[index].charAt(i)=='1')
@@ -284,33 +380,63 @@ public final class Game
 			else
 				powerPills.clear(i);
 		
+		_indexPills();
+		
 		timeOfLastGlobalReversal=Integer.parseInt(values[++index]);			
 		pacmanWasEaten=Boolean.parseBoolean(values[++index]);
 		
-		ghostsEaten=new EnumMap<GHOST,Boolean>(GHOST.class);
+		ghostsEatenMask=0;
 		
-		for(GHOST ghost : GHOST.values())
-			ghostsEaten.put(ghost,Boolean.parseBoolean(values[++index]));
+		for(int g=0;g<NUM_GHOSTS;g++)
+			if(Boolean.parseBoolean(values[++index]))
+				ghostsEatenMask|=1<<g;
 		
 		pillWasEaten=Boolean.parseBoolean(values[++index]);
 		powerPillWasEaten=Boolean.parseBoolean(values[++index]);
+		
+		_clearJournal();
 	}
 	
 	/**
 	 * Returns an exact copy of the game. This may be used for forward searches
-	 * such as minimax. The copying is relatively efficient.
+	 * such as minimax. The copying is relatively efficient. The copy's random
+	 * number generator continues from where this game's generator is, so the copy
+	 * draws the same random events as this game would (a snapshot's own stream is
+	 * forked from the game's, see snapshot()); use copy(long) to fork the copy onto
+	 * a different stream of random events.
 	 *
 	 * @return the game
 	 */
 	public Game copy()
+	{
+		Game copy=copy(seed);
+		copy.rnd.copyFrom(rnd);
+		
+		return copy;
+	}
+	
+	/**
+	 * Returns an exact copy of the game whose random number generator (used for
+	 * global reversals and for the moves of ghosts that cannot continue) is seeded
+	 * explicitly. Copies made with the same seed from the same state will play out
+	 * identically given the same moves.
+	 *
+	 * @param seed The seed for the copy's pseudo-random number generator
+	 * @return the game
+	 */
+	public Game copy(long seed)
 	{
 		Game copy=new Game();
 			
 		copy.seed=seed;
-		copy.rnd=new Random(seed);
+		copy.rnd=new GameRandom(seed);
 		copy.currentMaze=currentMaze;		
 		copy.pills=(BitSet)pills.clone();
 		copy.powerPills=(BitSet)powerPills.clone();		
+		copy.activePills=activePills.copy();
+		copy.activePowerPills=activePowerPills.copy();
+		copy.corridorPills=corridorPills.clone();
+		copy.corridorPowerPills=corridorPowerPills.clone();
 		copy.mazeIndex=mazeIndex;
 		copy.levelCount=levelCount;
 		copy.currentLevelTime=currentLevelTime;		
@@ -323,17 +449,373 @@ public final class Game
 		copy.pillWasEaten=pillWasEaten;
 		copy.powerPillWasEaten=powerPillWasEaten;		
 		copy.pacman=pacman.copy();
+		copy.ghostNodeIndex=ghostNodeIndex.clone();
+		copy.ghostEdibleTime=ghostEdibleTime.clone();
+		copy.ghostLairTime=ghostLairTime.clone();
+		copy.ghostLastMove=ghostLastMove.clone();
+		copy.ghostsEatenMask=ghostsEatenMask;
+			
+		return copy;	
+	}
+	
+	/**
+	 * Copies the state of this game into an existing game, overwriting all of its variables.
+	 * Unlike copy(), no new objects are allocated (apart from the rare case where the target
+	 * has to grow its pill sets), so a search may keep reusing the same few game objects.
+	 * The target's random number generator continues from where this game's is (see copy()).
+	 *
+	 * @param target The game to be overwritten
+	 */
+	public void copyInto(Game target)
+	{
+		copyInto(target,seed);
+		target.rnd.copyFrom(rnd);
+	}
+	
+	/**
+	 * Copies the state of this game into an existing game and re-seeds the target's random
+	 * number generator explicitly (see copy(long)).
+	 *
+	 * @param target The game to be overwritten
+	 * @param seed The seed for the target's pseudo-random number generator
+	 */
+	public void copyInto(Game target,long seed)
+	{
+		target._checkUpdatable();
 		
-		copy.ghostsEaten=new EnumMap<GHOST,Boolean>(GHOST.class);
-		copy.ghosts=new EnumMap<GHOST,Ghost>(GHOST.class);
+		target.seed=seed;
+		target.rnd.setSeed(seed);
+		target.currentMaze=currentMaze;
+		target.pills.clear();
+		target.pills.or(pills);
+		target.powerPills.clear();
+		target.powerPills.or(powerPills);
+		target.activePills=activePills.copyInto(target.activePills);
+		target.activePowerPills=activePowerPills.copyInto(target.activePowerPills);
 		
-		for(GHOST ghostType : GHOST.values())
+		if(target.corridorPills.length!=corridorPills.length)
 		{
-			copy.ghosts.put(ghostType,ghosts.get(ghostType).copy());
-			copy.ghostsEaten.put(ghostType,ghostsEaten.get(ghostType));
+			target.corridorPills=corridorPills.clone();
+			target.corridorPowerPills=corridorPowerPills.clone();
 		}
-			
-		return copy;	
+		else
+		{
+			System.arraycopy(corridorPills,0,target.corridorPills,0,corridorPills.length);
+			System.arraycopy(corridorPowerPills,0,target.corridorPowerPills,0,corridorPowerPills.length);
+		}
+		
+		target.mazeIndex=mazeIndex;
+		target.levelCount=levelCount;
+		target.currentLevelTime=currentLevelTime;
+		target.totalTime=totalTime;
+		target.score=score;
+		target.ghostEatMultiplier=ghostEatMultiplier;
+		target.gameOver=gameOver;
+		target.timeOfLastGlobalReversal=timeOfLastGlobalReversal;
+		target.pacmanWasEaten=pacmanWasEaten;
+		target.pillWasEaten=pillWasEaten;
+		target.powerPillWasEaten=powerPillWasEaten;
+		
+		target.pacman.currentNodeIndex=pacman.currentNodeIndex;
+		target.pacman.lastMoveMade=pacman.lastMoveMade;
+		target.pacman.numberOfLivesRemaining=pacman.numberOfLivesRemaining;
+		target.pacman.hasReceivedExtraLife=pacman.hasReceivedExtraLife;
+		
+		System.arraycopy(ghostNodeIndex,0,target.ghostNodeIndex,0,NUM_GHOSTS);
+		System.arraycopy(ghostEdibleTime,0,target.ghostEdibleTime,0,NUM_GHOSTS);
+		System.arraycopy(ghostLairTime,0,target.ghostLairTime,0,NUM_GHOSTS);
+		System.arraycopy(ghostLastMove,0,target.ghostLastMove,0,NUM_GHOSTS);
+		target.ghostsEatenMask=ghostsEatenMask;
+		
+		target._clearJournal();
+	}
+	
+	/**
+	 * Returns a read-only copy of the game: the methods that would change it throw an
+	 * IllegalStateException instead. A snapshot can thus be handed to both controllers and
+	 * the view at the same time without any of them disturbing the others. Whoever needs to
+	 * simulate ahead calls copy() on the snapshot to obtain a game of its own.
+	 * 
+	 * The snapshot's random number generator is forked from the game's: it depends on
+	 * the position in the game's stream, but copies of the snapshot do not draw the
+	 * random events the game itself is about to draw (which would make them predictable).
+	 *
+	 * @return the snapshot
+	 */
+	public Game snapshot()
+	{
+		Game copy=copy(rnd.fork());
+		copy.isSnapshot=true;
+		
+		return copy;
+	}
+	
+	/**
+	 * Same as snapshot() but overwrites a snapshot taken earlier rather than allocating a new
+	 * one (see copyInto()). Only do so once nobody is reading the earlier snapshot any more.
+	 *
+	 * @param previous A snapshot taken earlier, or null to allocate a new one
+	 * @return The snapshot
+	 */
+	public Game snapshot(Game previous)
+	{
+		if(previous==null)
+			return snapshot();
+		
+		if(!previous.isSnapshot)
+			throw new IllegalArgumentException("Only snapshots may be overwritten by snapshot()");
+		
+		previous.isSnapshot=false;
+		copyInto(previous,rnd.fork());
+		previous.isSnapshot=true;
+		
+		return previous;
+	}
+	
+	/**
+	 * Whether this game is a read-only snapshot (see snapshot()).
+	 *
+	 * @return true, if the game may not be updated
+	 */
+	public boolean isSnapshot()
+	{
+		return isSnapshot;
+	}
+	
+	/////////////////////////////////////////////////////////////////////////////
+	///////////////////////////  Undo journal   /////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Switches on the undo journal. From now on, every call to one of the update methods
+	 * (advanceGame(), updatePacMan(), updateGhosts(), updateGame() and their variants) records
+	 * the state it is about to change so that it can be reverted with undo(). A depth-first
+	 * search can then walk a single game object: advance, evaluate, undo. Recording costs a
+	 * few dozen int writes per step; a new level additionally keeps the old pill sets.
+	 * 
+	 * The journal also rewinds the random number generator, so replaying a step after undoing
+	 * it leads to the same random events (global reversals) as a copy taken before the step.
+	 */
+	public void enableJournal()
+	{
+		_checkUpdatable();
+		
+		if(journal==null)
+		{
+			journal=new int[64*JOURNAL_HEADER];
+			journalFrames=new int[64];
+			journalPills=new BitSet[2*64];
+			journalActivePills=new ActivePills[2*64];
+		}
+		
+		_clearJournal();
+	}
+	
+	/**
+	 * Switches off the undo journal and discards all recorded steps.
+	 */
+	public void disableJournal()
+	{
+		journal=journalFrames=null;
+		journalPills=null;
+		journalActivePills=null;
+		journalSize=numJournalFrames=journalDepth=0;
+	}
+	
+	/**
+	 * Whether the game currently records its updates for undo().
+	 *
+	 * @return true, if the journal is enabled
+	 */
+	public boolean isJournalEnabled()
+	{
+		return journal!=null;
+	}
+	
+	/**
+	 * Returns the number of steps that may currently be undone.
+	 *
+	 * @return the number of recorded steps
+	 */
+	public int getNumberOfUndoableSteps()
+	{
+		return numJournalFrames;
+	}
+	
+	/**
+	 * Reverts the most recent update recorded by the journal (see enableJournal()). One step
+	 * corresponds to one call of a public update method, so undoing after advanceGame() restores
+	 * the game to the state it was in before the call, at a cost proportional to the number of
+	 * pills eaten during the step.
+	 *
+	 * @return false if there was nothing to undo, true otherwise
+	 */
+	public boolean undo()
+	{
+		_checkUpdatable();
+		
+		if(numJournalFrames==0)
+			return false;
+		
+		int frame=--numJournalFrames;
+		int start=journalFrames[frame];
+		boolean newLevel=journalPills[2*frame]!=null;
+		
+		if(newLevel)
+		{
+			pills=journalPills[2*frame];
+			powerPills=journalPills[2*frame+1];
+			activePills=journalActivePills[2*frame];
+			activePowerPills=journalActivePills[2*frame+1];
+			journalPills[2*frame]=journalPills[2*frame+1]=null;
+			journalActivePills[2*frame]=journalActivePills[2*frame+1]=null;
+		}
+		
+		//in reverse order, so the lists of active pills end up exactly as they were
+		for(int i=journalSize-1;i>=start+JOURNAL_HEADER;i--)
+			if(journal[i]>=0)
+			{
+				pills.set(journal[i]);
+				activePills.restore(journal[i]);
+				
+				if(!newLevel)
+					_addCorridorPill(currentMaze.pillIndices[journal[i]],corridorPills,1);
+			}
+			else
+			{
+				powerPills.set(-1-journal[i]);
+				activePowerPills.restore(-1-journal[i]);
+				
+				if(!newLevel)
+					_addCorridorPill(currentMaze.powerPillIndices[-1-journal[i]],corridorPowerPills,1);
+			}
+		
+		int index=start;
+		
+		mazeIndex=journal[index++];
+		levelCount=journal[index++];
+		currentLevelTime=journal[index++];
+		totalTime=journal[index++];
+		score=journal[index++];
+		ghostEatMultiplier=journal[index++];
+		timeOfLastGlobalReversal=journal[index++];
+		
+		int flags=journal[index++];
+		
+		gameOver=(flags & 1)!=0;
+		pacmanWasEaten=(flags & 2)!=0;
+		pillWasEaten=(flags & 4)!=0;
+		powerPillWasEaten=(flags & 8)!=0;
+		
+		pacman.hasReceivedExtraLife=(flags & 16)!=0;
+		pacman.currentNodeIndex=journal[index++];
+		pacman.lastMoveMade=MOVES[journal[index++]];
+		pacman.numberOfLivesRemaining=journal[index++];
+		
+		for(int g=0;g<NUM_GHOSTS;g++)
+		{
+			ghostNodeIndex[g]=journal[index++];
+			ghostEdibleTime[g]=journal[index++];
+			ghostLairTime[g]=journal[index++];
+			ghostLastMove[g]=(byte)journal[index++];
+		}
+		
+		long lowBits=journal[index++]&0xFFFFFFFFL;
+		rnd.setState(lowBits|(long)journal[index++]<<32);
+		
+		ghostsEatenMask=flags>>>5;
+		
+		currentMaze=Mazes.getMaze(mazeIndex);
+		journalSize=start;
+		
+		//the lists of active pills were restored along with the pill sets; the counts were overwritten
+		if(newLevel)
+			_countCorridorPills();
+		
+		return true;
+	}
+	
+	/**
+	 * Opens a new journal frame if the journal is enabled and this is the outermost update call:
+	 * all variables that may change are recorded; pills eaten are appended as the step proceeds.
+	 * As every update goes through here, this is also where snapshots refuse to be updated.
+	 */
+	private void _beginStep()
+	{
+		_checkUpdatable();
+		
+		if(journal==null || journalDepth++>0)
+			return;
+		
+		if(numJournalFrames==journalFrames.length)
+		{
+			journalFrames=Arrays.copyOf(journalFrames,2*journalFrames.length);
+			journalPills=Arrays.copyOf(journalPills,2*journalPills.length);
+			journalActivePills=Arrays.copyOf(journalActivePills,2*journalActivePills.length);
+		}
+		
+		journalFrames[numJournalFrames++]=journalSize;
+		
+		int flags=(gameOver ? 1 : 0) | (pacmanWasEaten ? 2 : 0) | (pillWasEaten ? 4 : 0) | (powerPillWasEaten ? 8 : 0)
+				| (pacman.hasReceivedExtraLife ? 16 : 0) | (ghostsEatenMask<<5);
+		
+		_journal(mazeIndex);
+		_journal(levelCount);
+		_journal(currentLevelTime);
+		_journal(totalTime);
+		_journal(score);
+		_journal(ghostEatMultiplier);
+		_journal(timeOfLastGlobalReversal);
+		_journal(flags);
+		_journal(pacman.currentNodeIndex);
+		_journal(pacman.lastMoveMade.ordinal());
+		_journal(pacman.numberOfLivesRemaining);
+		
+		for(int g=0;g<NUM_GHOSTS;g++)
+		{
+			_journal(ghostNodeIndex[g]);
+			_journal(ghostEdibleTime[g]);
+			_journal(ghostLairTime[g]);
+			_journal(ghostLastMove[g]);
+		}
+		
+		long state=rnd.getState();
+		_journal((int)state);
+		_journal((int)(state>>>32));
+	}
+	
+	private void _checkUpdatable()
+	{
+		if(isSnapshot)
+			throw new IllegalStateException("The game is a read-only snapshot: use copy() to obtain a game that may be updated");
+	}
+	
+	/**
+	 * Closes the journal frame opened by the matching call to _beginStep().
+	 */
+	private void _endStep()
+	{
+		if(journalDepth>0)
+			journalDepth--;
+	}
+	
+	private void _journal(int value)
+	{
+		if(journalSize==journal.length)
+			journal=Arrays.copyOf(journal,2*journal.length);
+		
+		journal[journalSize++]=value;
+	}
+	
+	private void _clearJournal()
+	{
+		if(journal!=null)
+		{
+			Arrays.fill(journalPills,0,2*numJournalFrames,null);
+			Arrays.fill(journalActivePills,0,2*numJournalFrames,null);
+		}
+		
+		journalSize=numJournalFrames=journalDepth=0;
 	}
 
 	/////////////////////////////////////////////////////////////////////////////
@@ -349,28 +831,42 @@ public final class Game
 	 * @param ghostMoves The moves supplied by the ghosts controller
 	 */	
 	public void advanceGame(MOVE pacManMove,EnumMap<GHOST,MOVE> ghostMoves)
-	{		
+	{
+		_beginStep();
+		
 		updatePacMan(pacManMove);
 		updateGhosts(ghostMoves);	
 		updateGame();
+		
+		_endStep();
 	}
 	
 	public void advanceGameWithoutReverse(MOVE pacManMove,EnumMap<GHOST,MOVE> ghostMoves)
-	{		
+	{
+		_beginStep();
+		
 		updatePacMan(pacManMove);
 		updateGhostsWithoutReverse(ghostMoves);
 		updateGame();
+		
+		_endStep();
 	}
 	
 	public void advanceGameWithForcedReverse(MOVE pacManMove,EnumMap<GHOST,MOVE> ghostMoves)
-	{		
+	{
+		_beginStep();
+		
 		updatePacMan(pacManMove);
 		updateGhostsWithForcedReverse(ghostMoves);
 		updateGame();
+		
+		_endStep();
 	}
 	
 	public void advanceGameWithPowerPillReverseOnly(MOVE pacManMove,EnumMap<GHOST,MOVE> ghostMoves)
-	{		
+	{
+		_beginStep();
+		
 		updatePacMan(pacManMove);
 		
 		if(powerPillWasEaten)
@@ -379,8 +875,84 @@ public final class Game
 			updateGhostsWithoutReverse(ghostMoves);
 		
 		updateGame();
+		
+		_endStep();
+	}
+		
+	/**
+	 * Advances the game until Ms Pac-Man has to make her next decision. The move supplied is made
+	 * in the first time step; after that, Ms Pac-Man follows the corridor she is in (there is only
+	 * one way forward) until she reaches a junction. The game also stops early when something
+	 * happens that a search would want to react to: a pill or power pill is eaten, a ghost or
+	 * Ms Pac-Man is eaten, the ghosts reverse, the level or the game is over, or maxTicks time
+	 * steps have passed. Each time step is the same as advanceGame(), so the outcome is exactly
+	 * what calling advanceGame() repeatedly with the same moves would give, without returning to
+	 * the caller in between. With the journal enabled (see enableJournal()), the whole call is
+	 * a single step for undo().
+	 * 
+	 * The ghosts controller is only consulted in time steps where at least one ghost requires an
+	 * action (see doesGhostRequireAction()); in all others the ghosts simply keep going. It is
+	 * called with this game, which it must not modify.
+	 *
+	 * @param pacManMove The move made by Ms Pac-Man in the first time step
+	 * @param ghostPolicy Supplies the ghosts' moves when required; if null, the ghosts keep their last moves
+	 * @param maxTicks The maximum number of time steps to advance
+	 * @return The number of time steps the game was advanced by
+	 */
+	public int advanceUntilDecision(MOVE pacManMove,Function<Game,EnumMap<GHOST,MOVE>> ghostPolicy,int maxTicks)
+	{
+		_beginStep();
+		
+		int ticks=0;
+		MOVE move=pacManMove;
+		
+		while(ticks<maxTicks && !gameOver)
+		{
+			int level=levelCount;
+			int reversal=timeOfLastGlobalReversal;
+			
+			if(ghostPolicy!=null && _doesAnyGhostRequireAction())
+				advanceGame(move,ghostPolicy.apply(this));
+			else
+			{
+				//same as advanceGame() with the ghosts keeping their last moves
+				updatePacMan(move);
+				
+				if(!_reverseGhosts(false))
+					_updateGhostsWithLastMoves();
+				
+				updateGame();
+			}
+			
+			ticks++;
+			
+			if(gameOver || levelCount!=level || timeOfLastGlobalReversal!=reversal || pillWasEaten || powerPillWasEaten 
+					|| pacmanWasEaten || ghostsEatenMask!=0 || isJunction(pacman.currentNodeIndex))
+				break;
+			
+			//in a corridor, the only move that does not reverse is forced
+			MOVE[] moves=currentMaze.possibleMoves[NUM_MOVES*pacman.currentNodeIndex+pacman.lastMoveMade.ordinal()];
+			
+			if(moves==null || moves.length!=1)
+				break;
+			
+			move=moves[0];
+		}
+		
+		_endStep();
+		
+		return ticks;
 	}
+	
+	private boolean _doesAnyGhostRequireAction()
+	{
+		for(int g=0;g<NUM_GHOSTS;g++)
+			if(doesGhostRequireAction(GHOSTS[g]))
+				return true;
 		
+		return false;
+	}
+	
 	/**
 	 * Updates the state of Ms Pac-Man given the move returned by the controller.
 	 *
@@ -388,9 +960,13 @@ public final class Game
 	 */
 	public void updatePacMan(MOVE pacManMove)
 	{
+		_beginStep();
+
 		_updatePacMan(pacManMove);					//move pac-man		
 		_eatPill();									//eat a pill
 		_eatPowerPill();							//eat a power pill
+		
+		_endStep();
 	}
 	
 	/**
@@ -400,22 +976,34 @@ public final class Game
 	 */
 	public void updateGhosts(EnumMap<GHOST,MOVE> ghostMoves)
 	{
+		_beginStep();
+
 		ghostMoves=_completeGhostMoves(ghostMoves);
 		
-		if(!_reverseGhosts(ghostMoves,false))
+		if(!_reverseGhosts(false))
 			_updateGhosts(ghostMoves);
+		
+		_endStep();
 	}
 	
 	public void updateGhostsWithoutReverse(EnumMap<GHOST,MOVE> ghostMoves)
 	{
+		_beginStep();
+
 		ghostMoves=_completeGhostMoves(ghostMoves);
 		_updateGhosts(ghostMoves);
+		
+		_endStep();
 	}
 	
 	public void updateGhostsWithForcedReverse(EnumMap<GHOST,MOVE> ghostMoves)
 	{
+		_beginStep();
+
 		ghostMoves=_completeGhostMoves(ghostMoves);
-		_reverseGhosts(ghostMoves,true);
+		_reverseGhosts(true);
+		
+		_endStep();
 	}
 	
 	/**
@@ -425,6 +1013,8 @@ public final class Game
 	 */
 	public void updateGame()
 	{
+		_beginStep();
+
 		_feast();									//ghosts eat pac-man or vice versa		
 		_updateLairTimes();
 		_updatePacManExtraLife();
@@ -433,6 +1023,8 @@ public final class Game
 		currentLevelTime++;
 		
 		_checkLevelState();							//check if level/game is over
+		
+		_endStep();
 	}
 	
 	/**
@@ -446,7 +1038,9 @@ public final class Game
 	 * @param updateLevelTime Whether or not to update the level time
 	 */
 	public void updateGame(boolean feast,boolean updateLairTimes,boolean updateExtraLife,boolean updateTotalTime,boolean updateLevelTime)
-	{						
+	{
+		_beginStep();
+						
 		if(feast) 			_feast();				//ghosts eat pac-man or vice versa		
 		if(updateLairTimes) _updateLairTimes();
 		if(updateExtraLife) _updatePacManExtraLife();
@@ -455,6 +1049,8 @@ public final class Game
 		if(updateLevelTime) currentLevelTime++;
 		
 		_checkLevelState();							//check if level/game is over
+		
+		_endStep();
 	}
 	
 	/**
@@ -462,10 +1058,10 @@ public final class Game
 	 */
 	private void _updateLairTimes()
 	{
-		for(Ghost ghost : ghosts.values())
-			if(ghost.lairTime>0)
-				if(--ghost.lairTime==0)
-					ghost.currentNodeIndex=currentMaze.initialGhostNodeIndex;
+		for(int g=0;g<NUM_GHOSTS;g++)
+			if(ghostLairTime[g]>0)
+				if(--ghostLairTime[g]==0)
+					ghostNodeIndex[g]=currentMaze.initialGhostNodeIndex;
 	}
 	
 	/**
@@ -489,7 +1085,7 @@ public final class Game
 	{
 		pacman.lastMoveMade=_correctPacManDir(move);		
 		pacman.currentNodeIndex=pacman.lastMoveMade == MOVE.NEUTRAL ? pacman.currentNodeIndex : 
-			currentMaze.graph[pacman.currentNodeIndex].neighbourhood.get(pacman.lastMoveMade);
+			currentMaze.neighbours[NUM_MOVES*pacman.currentNodeIndex+pacman.lastMoveMade.ordinal()];
 	}
 
 	/**
@@ -500,15 +1096,15 @@ public final class Game
 	 */
 	private MOVE _correctPacManDir(MOVE direction)
 	{
-		Node node=currentMaze.graph[pacman.currentNodeIndex];
+		int offset=NUM_MOVES*pacman.currentNodeIndex;
 		
 		//direction is correct, return it
-		if(node.neighbourhood.containsKey(direction))
+		if(direction!=null && currentMaze.neighbours[offset+direction.ordinal()]!=-1)
 			return direction;
 		else
 		{
 			//try to use previous direction (i.e., continue in the same direction)
-			if(node.neighbourhood.containsKey(pacman.lastMoveMade))
+			if(currentMaze.neighbours[offset+pacman.lastMoveMade.ordinal()]!=-1)
 				return pacman.lastMoveMade;
 			//else stay put
 			else
@@ -524,19 +1120,32 @@ public final class Game
 	private void _updateGhosts(EnumMap<GHOST,MOVE> moves)
 	{
 		for(Entry<GHOST,MOVE> entry : moves.entrySet())
-		{
-			Ghost ghost=ghosts.get(entry.getKey());
-
-			if(ghost.lairTime==0)
-			{
-				if(ghost.edibleTime==0 || ghost.edibleTime%GHOST_SPEED_REDUCTION!=0)
-				{
-					ghost.lastMoveMade=_checkGhostDir(ghost,entry.getValue());					
-					moves.put(entry.getKey(), ghost.lastMoveMade);					
-					ghost.currentNodeIndex=currentMaze.graph[ghost.currentNodeIndex].neighbourhood.get(ghost.lastMoveMade);
-				}
-			}
-		}
+			if(_canGhostMove(entry.getKey().ordinal()))
+				entry.setValue(_moveGhost(entry.getKey().ordinal(),entry.getValue()));
+	}
+	
+	//same as _updateGhosts() with every ghost repeating its last move, without creating a map
+	private void _updateGhostsWithLastMoves()
+	{
+		for(int g=0;g<NUM_GHOSTS;g++)
+			if(_canGhostMove(g))
+				_moveGhost(g,MOVES[ghostLastMove[g]]);
+	}
+	
+	//ghosts in the lair do not move; edible ghosts move more slowly
+	private boolean _canGhostMove(int g)
+	{
+		return ghostLairTime[g]==0 && (ghostEdibleTime[g]==0 || ghostEdibleTime[g]%GHOST_SPEED_REDUCTION!=0);
+	}
+	
+	private MOVE _moveGhost(int g,MOVE direction)
+	{
+		MOVE move=_checkGhostDir(g,direction);
+		
+		ghostLastMove[g]=(byte)move.ordinal();
+		ghostNodeIndex[g]=currentMaze.neighbours[NUM_MOVES*ghostNodeIndex[g]+move.ordinal()];
+		
+		return move;
 	}
 	
 	private EnumMap<GHOST,MOVE> _completeGhostMoves(EnumMap<GHOST,MOVE> moves)
@@ -546,7 +1155,7 @@ public final class Game
 			moves=new EnumMap<GHOST,MOVE>(GHOST.class);
 			
 			for(GHOST ghostType : GHOST.values())
-				moves.put(ghostType,ghosts.get(ghostType).lastMoveMade);
+				moves.put(ghostType,MOVES[ghostLastMove[ghostType.ordinal()]]);
 		}
 		
 		if(moves.size()<NUM_GHOSTS)
@@ -560,25 +1169,26 @@ public final class Game
 	/**
 	 * _check ghost dir.
 	 *
-	 * @param ghost the ghost
+	 * @param g the ordinal of the ghost
 	 * @param direction the direction
 	 * @return the mOVE
 	 */
-	private MOVE _checkGhostDir(Ghost ghost,MOVE direction)
+	private MOVE _checkGhostDir(int g,MOVE direction)
 	{
-		//Gets the neighbours of the node with the node that would correspond to reverse removed
-		Node node=currentMaze.graph[ghost.currentNodeIndex];
+		int offset=NUM_MOVES*ghostNodeIndex[g];
+		int lastMoveMade=ghostLastMove[g];
 		
 		//The direction is possible and not opposite to the previous direction of that ghost
-		if(node.neighbourhood.containsKey(direction) && direction!=ghost.lastMoveMade.opposite())
+		if(direction!=null && currentMaze.neighbours[offset+direction.ordinal()]!=-1 && direction.ordinal()!=Maze.opposite[lastMoveMade])
 			return direction;
 		else
 		{
-			if(node.neighbourhood.containsKey(ghost.lastMoveMade))
-				return ghost.lastMoveMade;
+			if(currentMaze.neighbours[offset+lastMoveMade]!=-1)
+				return MOVES[lastMoveMade];
 			else
 			{
-				MOVE[] moves=node.allPossibleMoves.get(ghost.lastMoveMade);
+				//Gets the moves of the node with the move that would correspond to reverse removed
+				MOVE[] moves=currentMaze.possibleMoves[offset+lastMoveMade];
 				return moves[rnd.nextInt(moves.length)];				
 			}
 		}
@@ -597,10 +1207,26 @@ public final class Game
 		{
 			score+=PILL;
 			pills.clear(pillIndex);
+			activePills.remove(pillIndex);
+			_addCorridorPill(pacman.currentNodeIndex,corridorPills,-1);
 			pillWasEaten=true;
+			
+			if(journalDepth>0)
+				_journal(pillIndex);
 		}
 	}
 	
+	/**
+	 * Adds to the number of pills (or power pills) of the corridor the node belongs to, if any.
+	 */
+	private void _addCorridorPill(int nodeIndex,int[] counts,int delta)
+	{
+		int corridor=currentMaze.getCorridorGraph().getCorridorOfNode(nodeIndex);
+		
+		if(corridor>=0)
+			counts[corridor]+=delta;
+	}
+	
 	/**
 	 * _eat power pill.
 	 */
@@ -615,37 +1241,43 @@ public final class Game
 			score+=POWER_PILL;
 			ghostEatMultiplier=1;
 			powerPills.clear(powerPillIndex);
+			activePowerPills.remove(powerPillIndex);
+			_addCorridorPill(pacman.currentNodeIndex,corridorPowerPills,-1);
+			
+			if(journalDepth>0)
+				_journal(-1-powerPillIndex);
 			
 			int newEdibleTime=(int)(EDIBLE_TIME*(Math.pow(EDIBLE_TIME_REDUCTION,levelCount%LEVEL_RESET_REDUCTION)));
 			
-			for(Ghost ghost : ghosts.values())
-				if(ghost.lairTime==0)
-					ghost.edibleTime=newEdibleTime;
+			for(int g=0;g<NUM_GHOSTS;g++)
+				if(ghostLairTime[g]==0)
+					ghostEdibleTime[g]=newEdibleTime;
 				else
-					ghost.edibleTime=0;
+					ghostEdibleTime[g]=0;
 			
 			powerPillWasEaten=true;
 		}
 	}
 	
-	private boolean _reverseGhosts(EnumMap<GHOST,MOVE> moves,boolean force)
+	private boolean _reverseGhosts(boolean force)
 	{
 		boolean reversed=false;		
 		boolean globalReverse=false;
 			
-		if(Math.random()<GHOST_REVERSAL)
+		//drawn from the game's own generator so that games with identical seeds reverse identically
+		if(rnd.nextDouble()<GHOST_REVERSAL)
 			globalReverse=true;
 		
-		for(Entry<GHOST,MOVE> entry : moves.entrySet())
+		for(int g=0;g<NUM_GHOSTS;g++)
 		{
-			Ghost ghost=ghosts.get(entry.getKey());
-		
-			if(currentLevelTime>1 && ghost.lairTime==0 && ghost.lastMoveMade!=MOVE.NEUTRAL)
+			if(currentLevelTime>1 && ghostLairTime[g]==0 && ghostLastMove[g]!=MOVE.NEUTRAL.ordinal())
 			{
 				if(force || (powerPillWasEaten || globalReverse))
 				{
-					ghost.lastMoveMade=ghost.lastMoveMade.opposite();
-					ghost.currentNodeIndex=currentMaze.graph[ghost.currentNodeIndex].neighbourhood.get(ghost.lastMoveMade);
+					int reverse=Maze.opposite[ghostLastMove[g]];
+					
+					ghostLastMove[g]=(byte)reverse;
+					ghostNodeIndex[g]=currentMaze.neighbours[NUM_MOVES*ghostNodeIndex[g]+reverse];
 					reversed=true;
 					timeOfLastGlobalReversal = totalTime;
 				}
@@ -662,25 +1294,24 @@ public final class Game
 	{		
 		pacmanWasEaten=false;
 		
-		for(GHOST ghost : GHOST.values())
-			ghostsEaten.put(ghost,false);
+		ghostsEatenMask=0;
 		
-		for(Ghost ghost : ghosts.values())
+		for(int g=0;g<NUM_GHOSTS;g++)
 		{
-			int distance=getShortestPathDistance(pacman.currentNodeIndex, ghost.currentNodeIndex);
+			int distance=getShortestPathDistance(pacman.currentNodeIndex, ghostNodeIndex[g]);
 			
 			if(distance<=EAT_DISTANCE && distance!=-1)
 			{
-				if(ghost.edibleTime>0)									//pac-man eats ghost
+				if(ghostEdibleTime[g]>0)									//pac-man eats ghost
 				{
 					score+=GHOST_EAT_SCORE*ghostEatMultiplier;
 					ghostEatMultiplier*=2;
-					ghost.edibleTime=0;					
-					ghost.lairTime=(int)(COMMON_LAIR_TIME*(Math.pow(LAIR_REDUCTION,levelCount%LEVEL_RESET_REDUCTION)));					
-					ghost.currentNodeIndex=currentMaze.lairNodeIndex;
-					ghost.lastMoveMade=MOVE.NEUTRAL;
+					ghostEdibleTime[g]=0;					
+					ghostLairTime[g]=(int)(COMMON_LAIR_TIME*(Math.pow(LAIR_REDUCTION,levelCount%LEVEL_RESET_REDUCTION)));					
+					ghostNodeIndex[g]=currentMaze.lairNodeIndex;
+					ghostLastMove[g]=(byte)MOVE.NEUTRAL.ordinal();
 					
-					ghostsEaten.put(ghost.type, true);
+					ghostsEatenMask|=1<<g;
 				}
 				else													//ghost eats pac-man
 				{
@@ -697,9 +1328,9 @@ public final class Game
 			}
 		}
 		
-		for(Ghost ghost : ghosts.values())
-			if(ghost.edibleTime>0)
-				ghost.edibleTime--;
+		for(int g=0;g<NUM_GHOSTS;g++)
+			if(ghostEdibleTime[g]>0)
+				ghostEdibleTime[g]--;
 	}
 	
 	/**
@@ -739,18 +1370,12 @@ public final class Game
 	 */
 	public boolean wasGhostEaten(GHOST ghost)
 	{
-		return ghostsEaten.get(ghost);
+		return (ghostsEatenMask & (1<<ghost.ordinal()))!=0;
 	}
 	
 	public int getNumGhostsEaten()
 	{
-		int count=0;
-		
-		for(GHOST ghost : GHOST.values())
-			if(ghostsEaten.get(ghost))
-				count++;
-		
-		return count;
+		return Integer.bitCount(ghostsEatenMask);
 	}
 	
 	/**
@@ -804,6 +1429,42 @@ public final class Game
 		return currentMaze;
 	}
 	
+	/**
+	 * Returns the junctions of the current maze and the corridors between them. The graph
+	 * is immutable and shared by all games; the pills left in each corridor are available
+	 * from getNumberOfActivePillsInCorridor() and getNumberOfActivePowerPillsInCorridor().
+	 * 
+	 * @return The corridor graph of the current maze.
+	 */
+	public CorridorGraph getCorridorGraph()
+	{
+		return currentMaze.getCorridorGraph();
+	}
+	
+	/**
+	 * Returns the number of pills still available in the corridor specified. The counts are
+	 * kept up to date as the pills are eaten, so this is a simple look-up. Pills on junctions
+	 * do not belong to any corridor.
+	 *
+	 * @param corridor The corridor (see getCorridorGraph())
+	 * @return The number of pills left in the corridor
+	 */
+	public int getNumberOfActivePillsInCorridor(int corridor)
+	{
+		return corridorPills[corridor];
+	}
+	
+	/**
+	 * Returns the number of power pills still available in the corridor specified.
+	 *
+	 * @param corridor The corridor (see getCorridorGraph())
+	 * @return The number of power pills left in the corridor
+	 */
+	public int getNumberOfActivePowerPillsInCorridor(int corridor)
+	{
+		return corridorPowerPills[corridor];
+	}
+	
 	/**
 	 * Returns the x coordinate of the specified node.
 	 *
@@ -991,7 +1652,7 @@ public final class Game
 	 */
 	public int getGhostCurrentNodeIndex(GHOST ghostType)
 	{
-		return ghosts.get(ghostType).currentNodeIndex;
+		return ghostNodeIndex[ghostType.ordinal()];
 	}
 
 	/**
@@ -1002,7 +1663,7 @@ public final class Game
 	 */
 	public MOVE getGhostLastMoveMade(GHOST ghostType)
 	{
-		return ghosts.get(ghostType).lastMoveMade;
+		return MOVES[ghostLastMove[ghostType.ordinal()]];
 	}
 	
 	/**
@@ -1013,7 +1674,7 @@ public final class Game
 	 */
 	public int getGhostEdibleTime(GHOST ghostType)
 	{
-		return ghosts.get(ghostType).edibleTime;
+		return ghostEdibleTime[ghostType.ordinal()];
 	}
 	
 	/**
@@ -1024,7 +1685,7 @@ public final class Game
 	 */
 	public boolean isGhostEdible(GHOST ghostType)
 	{
-		return ghosts.get(ghostType).edibleTime>0;
+		return ghostEdibleTime[ghostType.ordinal()]>0;
 	}
 
 	/**
@@ -1084,7 +1745,7 @@ public final class Game
 	 */
 	public int getNumberOfActivePills()
 	{
-		return pills.cardinality();
+		return activePills.size();
 	}
 	
 	/**
@@ -1094,7 +1755,7 @@ public final class Game
 	 */
 	public int getNumberOfActivePowerPills()
 	{
-		return powerPills.cardinality();
+		return activePowerPills.size();
 	}
 	
 	/**
@@ -1105,7 +1766,7 @@ public final class Game
 	 */
 	public int getGhostLairTime(GHOST ghostType)
 	{
-		return ghosts.get(ghostType).lairTime;
+		return ghostLairTime[ghostType.ordinal()];
 	}
 	
 	/**
@@ -1115,13 +1776,12 @@ public final class Game
 	 */
 	public int[] getActivePillsIndices()
 	{
-		int[] indices=new int[pills.cardinality()];
+		int[] indices=new int[activePills.size()];
 		
 		int index=0;
 		
-		for(int i=0;i<currentMaze.pillIndices.length;i++)
-			if(pills.get(i))
-				indices[index++]=currentMaze.pillIndices[i];		
+		for(int i=pills.nextSetBit(0);index<indices.length;i=pills.nextSetBit(i+1))
+			indices[index++]=currentMaze.pillIndices[i];
 			
 		return indices;
 	}
@@ -1133,16 +1793,61 @@ public final class Game
 	 */
 	public int[] getActivePowerPillsIndices()
 	{
-		int[] indices=new int[powerPills.cardinality()];
+		int[] indices=new int[activePowerPills.size()];
 		
 		int index=0;
 		
-		for(int i=0;i<currentMaze.powerPillIndices.length;i++)
-			if(powerPills.get(i))
-				indices[index++]=currentMaze.powerPillIndices[i];		
+		for(int i=powerPills.nextSetBit(0);index<indices.length;i=powerPills.nextSetBit(i+1))
+			indices[index++]=currentMaze.powerPillIndices[i];
 			
 		return indices;
 	}
+	
+	/**
+	 * Returns the node index of one of the active pills, without allocating anything: together
+	 * with getNumberOfActivePills(), this is a read-only view of the active pills. The order of
+	 * the pills is arbitrary (unlike getActivePillsIndices(), which lists them in the order of the
+	 * pill indices) and changes as pills are eaten.
+	 *
+	 * @param i The position of the pill, from 0 to getNumberOfActivePills()-1
+	 * @return The node index of the pill
+	 */
+	public int getActivePillNodeIndex(int i)
+	{
+		return activePills.getNodeIndex(i);
+	}
+	
+	/**
+	 * Returns the node index of one of the active power pills (see getActivePillNodeIndex()).
+	 *
+	 * @param i The position of the power pill, from 0 to getNumberOfActivePowerPills()-1
+	 * @return The node index of the power pill
+	 */
+	public int getActivePowerPillNodeIndex(int i)
+	{
+		return activePowerPills.getNodeIndex(i);
+	}
+	
+	/**
+	 * Passes the node index of every active pill to the action specified, in time proportional
+	 * to the number of active pills and without allocating an array. The order is arbitrary.
+	 *
+	 * @param action The action to perform for each pill
+	 */
+	public void forEachActivePill(IntConsumer action)
+	{
+		activePills.forEach(action);
+	}
+	
+	/**
+	 * Passes the node index of every active power pill to the action specified (see forEachActivePill()).
+	 *
+	 * @param action The action to perform for each power pill
+	 */
+	public void forEachActivePowerPill(IntConsumer action)
+	{
+		activePowerPills.forEach(action);
+	}
 
 	/**
 	 * If in lair (getLairTime(-)>0) or if not at junction.
@@ -1152,9 +1857,11 @@ public final class Game
 	 */
 	public boolean doesGhostRequireAction(GHOST ghostType)
 	{
+		int g=ghostType.ordinal();
+		
 		//inlcude neutral here for the unique case where the ghost just left the lair
-		return ((isJunction(ghosts.get(ghostType).currentNodeIndex) || (ghosts.get(ghostType).lastMoveMade==MOVE.NEUTRAL) && ghosts.get(ghostType).currentNodeIndex==currentMaze.initialGhostNodeIndex) 
-				&& (ghosts.get(ghostType).edibleTime==0 || ghosts.get(ghostType).edibleTime%GHOST_SPEED_REDUCTION!=0));
+		return ((isJunction(ghostNodeIndex[g]) || (ghostLastMove[g]==MOVE.NEUTRAL.ordinal()) && ghostNodeIndex[g]==currentMaze.initialGhostNodeIndex) 
+				&& (ghostEdibleTime[g]==0 || ghostEdibleTime[g]%GHOST_SPEED_REDUCTION!=0));
 	}
 	
 	/**
@@ -1176,7 +1883,7 @@ public final class Game
 	 */
 	public MOVE[] getPossibleMoves(int nodeIndex)
 	{
-		return currentMaze.graph[nodeIndex].allPossibleMoves.get(MOVE.NEUTRAL);
+		return currentMaze.possibleMoves[NUM_MOVES*nodeIndex+MOVE.NEUTRAL.ordinal()];
 	}
 	
 	/**
@@ -1188,7 +1895,7 @@ public final class Game
 	 */
 	public MOVE[] getPossibleMoves(int nodeIndex,MOVE lastModeMade)
 	{
-		return currentMaze.graph[nodeIndex].allPossibleMoves.get(lastModeMade);
+		return currentMaze.possibleMoves[NUM_MOVES*nodeIndex+lastModeMade.ordinal()];
 	}
 	
 	/**
@@ -1199,7 +1906,7 @@ public final class Game
 	 */
 	public int[] getNeighbouringNodes(int nodeIndex)
 	{
-		return currentMaze.graph[nodeIndex].allNeighbouringNodes.get(MOVE.NEUTRAL);
+		return currentMaze.neighbouringNodes[NUM_MOVES*nodeIndex+MOVE.NEUTRAL.ordinal()];
 	}
 	
 	/**
@@ -1212,7 +1919,7 @@ public final class Game
 	 */
 	public int[] getNeighbouringNodes(int nodeIndex,MOVE lastModeMade)
 	{
-		return currentMaze.graph[nodeIndex].allNeighbouringNodes.get(lastModeMade);
+		return currentMaze.neighbouringNodes[NUM_MOVES*nodeIndex+lastModeMade.ordinal()];
 	}
 	
    /**
@@ -1225,9 +1932,7 @@ public final class Game
     */
     public int getNeighbour(int nodeIndex, MOVE moveToBeMade)
     {
-    	Integer neighbour=currentMaze.graph[nodeIndex].neighbourhood.get(moveToBeMade);
-    	
-    	return neighbour==null ? -1 : neighbour;
+    	return moveToBeMade==null ? -1 : currentMaze.neighbours[NUM_MOVES*nodeIndex+moveToBeMade.ordinal()];
     }
     	
 	/**
@@ -1240,12 +1945,11 @@ public final class Game
 	 */
 	public MOVE getMoveToMakeToReachDirectNeighbour(int currentNodeIndex,int neighbourNodeIndex)
 	{
-		for(MOVE move : MOVE.values())
+		for(int i=0;i<NUM_MOVES;i++)
 		{
-			if(currentMaze.graph[currentNodeIndex].neighbourhood.containsKey(move) 
-					&& currentMaze.graph[currentNodeIndex].neighbourhood.get(move)==neighbourNodeIndex)
+			if(currentMaze.neighbours[NUM_MOVES*currentNodeIndex+i]==neighbourNodeIndex && neighbourNodeIndex!=-1)
 			{
-				return move;
+				return MOVES[i];
 			}
 		}
 		
@@ -1265,12 +1969,7 @@ public final class Game
 	 */
 	public int getShortestPathDistance(int fromNodeIndex,int toNodeIndex)
 	{
-		if(fromNodeIndex==toNodeIndex)
-			return 0;		
-		else if(fromNodeIndex<toNodeIndex)
-			return currentMaze.shortestPathDistances[((toNodeIndex*(toNodeIndex+1))/2)+fromNodeIndex];
-		else
-			return currentMaze.shortestPathDistances[((fromNodeIndex*(fromNodeIndex+1))/2)+toNodeIndex];
+		return currentMaze.shortestPathDistances.get(fromNodeIndex,toNodeIndex);
 	}
 	
 	/**
@@ -1396,6 +2095,91 @@ public final class Game
 		return target;
 	}
 
+	/**
+	 * Returns the active pill closest to the node specified (shortest path distance). The same as
+	 * getClosestNodeIndexFromNodeIndex(nodeIndex,getActivePillsIndices(),DM.PATH), including the
+	 * way ties are broken, but the pills are looked up in a list pre-sorted by distance, so the
+	 * search stops at the first pill that has not been eaten yet.
+	 *
+	 * @param nodeIndex The node to search from
+	 * @return The node index of the closest active pill, -1 if there is none
+	 */
+	public int getClosestActivePillNodeIndex(int nodeIndex)
+	{
+		return _getClosestActive(currentMaze.getPillsByDistance(),pills,nodeIndex);
+	}
+	
+	/**
+	 * Returns the active power pill closest to the node specified (see getClosestActivePillNodeIndex()).
+	 *
+	 * @param nodeIndex The node to search from
+	 * @return The node index of the closest active power pill, -1 if there is none
+	 */
+	public int getClosestActivePowerPillNodeIndex(int nodeIndex)
+	{
+		return _getClosestActive(currentMaze.getPowerPillsByDistance(),powerPills,nodeIndex);
+	}
+	
+	/**
+	 * Finds the active pills closest to the node specified, in order of increasing shortest path
+	 * distance (see getClosestActivePillNodeIndex()). The number of pills asked for is the length
+	 * of the array supplied, which is filled from the start.
+	 *
+	 * @param nodeIndex The node to search from
+	 * @param closest The array to store the node indices of the pills in
+	 * @return The number of pills found, fewer than asked for if not enough pills are left
+	 */
+	public int getClosestActivePillNodeIndices(int nodeIndex,int[] closest)
+	{
+		return getActivePillNodeIndicesWithinDistance(nodeIndex,Integer.MAX_VALUE,closest);
+	}
+	
+	/**
+	 * Finds the active pills whose shortest path distance from the node specified is at most the
+	 * distance given, in order of increasing distance. At most as many pills as fit into the array
+	 * supplied are returned (the closest ones).
+	 *
+	 * @param nodeIndex The node to search from
+	 * @param maxDistance The largest distance of a pill to be included
+	 * @param pillNodeIndices The array to store the node indices of the pills in
+	 * @return The number of pills found
+	 */
+	public int getActivePillNodeIndicesWithinDistance(int nodeIndex,int maxDistance,int[] pillNodeIndices)
+	{
+		TargetsByDistance sorted=currentMaze.getPillsByDistance();
+		int count=0;
+		
+		for(int rank=0;rank<sorted.getNumberOfTargets() && count<pillNodeIndices.length;rank++)
+		{
+			int pill=sorted.getTarget(nodeIndex,rank);
+			
+			if(pills.get(pill))
+			{
+				int pillNodeIndex=sorted.getTargetNodeIndex(pill);
+				
+				if(currentMaze.shortestPathDistances.get(nodeIndex,pillNodeIndex)>maxDistance)
+					break;
+				
+				pillNodeIndices[count++]=pillNodeIndex;
+			}
+		}
+		
+		return count;
+	}
+	
+	private static int _getClosestActive(TargetsByDistance sorted,BitSet active,int nodeIndex)
+	{
+		for(int rank=0;rank<sorted.getNumberOfTargets();rank++)
+		{
+			int target=sorted.getTarget(nodeIndex,rank);
+			
+			if(active.get(target))
+				return sorted.getTargetNodeIndex(target);
+		}
+		
+		return -1;
+	}
+	
 	/**
 	 * Gets the next move towards target.
 	 *
@@ -1406,18 +2190,26 @@ public final class Game
 	 */
 	public MOVE getNextMoveTowardsTarget(int fromNodeIndex,int toNodeIndex,DM distanceMeasure)
 	{
+		if(distanceMeasure==DM.PATH && currentMaze.graph[fromNodeIndex].numNeighbouringNodes>0)
+			return currentMaze.getNextMoves().getMoveTowards(fromNodeIndex,toNodeIndex);	//table look-up, same result as the loop below
+		
 		MOVE move=null;
 
 		double minDistance=Integer.MAX_VALUE;
 
-		for(Entry<MOVE,Integer> entry : currentMaze.graph[fromNodeIndex].neighbourhood.entrySet())
+		for(int i=0;i<NUM_MOVES;i++)
 		{
-			double distance=getDistance(entry.getValue(),toNodeIndex,distanceMeasure);
-								
-			if(distance<minDistance)
+			int neighbour=currentMaze.neighbours[NUM_MOVES*fromNodeIndex+i];
+			
+			if(neighbour!=-1)
 			{
-				minDistance=distance;
-				move=entry.getKey();	
+				double distance=getDistance(neighbour,toNodeIndex,distanceMeasure);
+									
+				if(distance<minDistance)
+				{
+					minDistance=distance;
+					move=MOVES[i];	
+				}
 			}
 		}
 		
@@ -1434,18 +2226,26 @@ public final class Game
 	 */
 	public MOVE getNextMoveAwayFromTarget(int fromNodeIndex,int toNodeIndex,DM distanceMeasure)
 	{
+		if(distanceMeasure==DM.PATH && currentMaze.graph[fromNodeIndex].numNeighbouringNodes>0)
+			return currentMaze.getNextMoves().getMoveAwayFrom(fromNodeIndex,toNodeIndex);	//table look-up, same result as the loop below
+		
 		MOVE move=null;
 
 		double maxDistance=Integer.MIN_VALUE;
 
-		for(Entry<MOVE,Integer> entry : currentMaze.graph[fromNodeIndex].neighbourhood.entrySet())
+		for(int i=0;i<NUM_MOVES;i++)
 		{
-			double distance=getDistance(entry.getValue(),toNodeIndex,distanceMeasure);
-								
-			if(distance>maxDistance)
+			int neighbour=currentMaze.neighbours[NUM_MOVES*fromNodeIndex+i];
+			
+			if(neighbour!=-1)
 			{
-				maxDistance=distance;
-				move=entry.getKey();	
+				double distance=getDistance(neighbour,toNodeIndex,distanceMeasure);
+									
+				if(distance>maxDistance)
+				{
+					maxDistance=distance;
+					move=MOVES[i];	
+				}
 			}
 		}
 		
@@ -1466,15 +2266,21 @@ public final class Game
 		MOVE move=null;
 
 		double minDistance=Integer.MAX_VALUE;
+		int excluded=Maze.opposite[lastMoveMade.ordinal()];	//the reverse of the last move made is not allowed
 
-		for(Entry<MOVE,Integer> entry : currentMaze.graph[fromNodeIndex].allNeighbourhoods.get(lastMoveMade).entrySet())
+		for(int i=0;i<NUM_MOVES;i++)
 		{
-			double distance=getDistance(entry.getValue(),toNodeIndex,distanceMeasure);
-								
-			if(distance<minDistance)
+			int neighbour=currentMaze.neighbours[NUM_MOVES*fromNodeIndex+i];
+			
+			if(neighbour!=-1 && i!=excluded)
 			{
-				minDistance=distance;
-				move=entry.getKey();	
+				double distance=getDistance(neighbour,toNodeIndex,distanceMeasure);
+									
+				if(distance<minDistance)
+				{
+					minDistance=distance;
+					move=MOVES[i];	
+				}
 			}
 		}
 		
@@ -1495,15 +2301,21 @@ public final class Game
 		MOVE move=null;
 
 		double maxDistance=Integer.MIN_VALUE;
+		int excluded=Maze.opposite[lastMoveMade.ordinal()];	//the reverse of the last move made is not allowed
 
-		for(Entry<MOVE,Integer> entry : currentMaze.graph[fromNodeIndex].allNeighbourhoods.get(lastMoveMade).entrySet())
+		for(int i=0;i<NUM_MOVES;i++)
 		{
-			double distance=getDistance(entry.getValue(),toNodeIndex,distanceMeasure);
-								
-			if(distance>maxDistance)
+			int neighbour=currentMaze.neighbours[NUM_MOVES*fromNodeIndex+i];
+			
+			if(neighbour!=-1 && i!=excluded)
 			{
-				maxDistance=distance;
-				move=entry.getKey();	
+				double distance=getDistance(neighbour,toNodeIndex,distanceMeasure);
+									
+				if(distance>maxDistance)
+				{
+					maxDistance=distance;
+					move=MOVES[i];	
+				}
 			}
 		}
 		
@@ -1524,15 +2336,21 @@ public final class Game
 		MOVE move=null;
 
 		double minDistance=Integer.MAX_VALUE;
+		int excluded=Maze.opposite[lastMoveMade.ordinal()];	//the reverse of the last move made is not allowed
 
-		for(Entry<MOVE,Integer> entry : currentMaze.graph[fromNodeIndex].allNeighbourhoods.get(lastMoveMade).entrySet())
+		for(int i=0;i<NUM_MOVES;i++)
 		{
-			double distance=getDistance(entry.getValue(),toNodeIndex,lastMoveMade,distanceMeasure);
-								
-			if(distance<minDistance)
+			int neighbour=currentMaze.neighbours[NUM_MOVES*fromNodeIndex+i];
+			
+			if(neighbour!=-1 && i!=excluded)
 			{
-				minDistance=distance;
-				move=entry.getKey();	
+				double distance=getDistance(neighbour,toNodeIndex,lastMoveMade,distanceMeasure);
+									
+				if(distance<minDistance)
+				{
+					minDistance=distance;
+					move=MOVES[i];	
+				}
 			}
 		}
 		
@@ -1553,15 +2371,21 @@ public final class Game
 		MOVE move=null;
 
 		double maxDistance=Integer.MIN_VALUE;
+		int excluded=Maze.opposite[lastMoveMade.ordinal()];	//the reverse of the last move made is not allowed
 
-		for(Entry<MOVE,Integer> entry : currentMaze.graph[fromNodeIndex].allNeighbourhoods.get(lastMoveMade).entrySet())
+		for(int i=0;i<NUM_MOVES;i++)
 		{
-			double distance=getDistance(entry.getValue(),toNodeIndex,lastMoveMade,distanceMeasure);
-								
-			if(distance>maxDistance)
+			int neighbour=currentMaze.neighbours[NUM_MOVES*fromNodeIndex+i];
+			
+			if(neighbour!=-1 && i!=excluded)
 			{
-				maxDistance=distance;
-				move=entry.getKey();	
+				double distance=getDistance(neighbour,toNodeIndex,lastMoveMade,distanceMeasure);
+									
+				if(distance>maxDistance)
+				{
+					maxDistance=distance;
+					move=MOVES[i];	
+				}
 			}
 		}
 		
@@ -1593,7 +2417,43 @@ public final class Game
 	 */
 	public int[] getShortestPath(int fromNodeIndex,int toNodeIndex)
 	{
-		return caches[mazeIndex].getPathFromA2B(fromNodeIndex,toNodeIndex);
+		return Mazes.getPathsCache(mazeIndex).getPathFromA2B(fromNodeIndex,toNodeIndex);
+	}
+	
+	/**
+	 * Visits the nodes of the shortest path from node A to node B, in order, without creating the
+	 * path: the same nodes as returned by getShortestPath(fromNodeIndex,toNodeIndex) are passed to
+	 * the visitor, which may stop the walk early by returning false. Useful when the path is only
+	 * scanned once, e.g., to check whether a ghost blocks it.
+	 *
+	 * @param fromNodeIndex The node index from where to start (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param visitor Called with each node index on the path; returns false to stop
+	 * @return true if all nodes were visited, false if the visitor stopped the walk
+	 */
+	public boolean forEachNodeOnPath(int fromNodeIndex,int toNodeIndex,IntPredicate visitor)
+	{
+		return Mazes.getPathsCache(mazeIndex).forEachNodeOnPath(fromNodeIndex,toNodeIndex,visitor);
+	}
+	
+	/**
+	 * Visits the nodes of the shortest path from node A to node B taking into account the last move
+	 * made (i.e., no reversals), in order, without creating the path: the same nodes as returned by
+	 * getShortestPath(fromNodeIndex,toNodeIndex,lastMoveMade) are passed to the visitor, which may
+	 * stop the walk early by returning false.
+	 *
+	 * @param fromNodeIndex The node index from where to start (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param lastMoveMade The last move made
+	 * @param visitor Called with each node index on the path; returns false to stop
+	 * @return true if all nodes were visited, false if the visitor stopped the walk
+	 */
+	public boolean forEachNodeOnPath(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade,IntPredicate visitor)
+	{
+		if(currentMaze.graph[fromNodeIndex].numNeighbouringNodes==0)//lair
+			return true;
+
+		return Mazes.getPathsCache(mazeIndex).forEachNodeOnPath(fromNodeIndex,toNodeIndex,lastMoveMade,visitor);
 	}
 	
 	/**
@@ -1626,10 +2486,10 @@ public final class Game
 	 */
 	public int[] getShortestPath(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade)
 	{
-		if(currentMaze.graph[fromNodeIndex].neighbourhood.size()==0)//lair
+		if(currentMaze.graph[fromNodeIndex].numNeighbouringNodes==0)//lair
 			return new int[0];
 
-		return caches[mazeIndex].getPathFromA2B(fromNodeIndex,toNodeIndex,lastMoveMade);
+		return Mazes.getPathsCache(mazeIndex).getPathFromA2B(fromNodeIndex,toNodeIndex,lastMoveMade);
 	}
 	
 	/**
@@ -1650,8 +2510,8 @@ public final class Game
 	}
 	
 	/**
-	 * Similar to getShortestPath but returns the distance of the path only. It is slightly
-	 * more efficient.
+	 * Similar to getShortestPath but returns the distance of the path only. The distance is
+	 * looked up in constant time from tables built the first time it is needed.
 	 *  
 	 * @param fromNodeIndex The node index from where to start (i.e., current position)
 	 * @param toNodeIndex The target node index
@@ -1660,9 +2520,27 @@ public final class Game
 	 */
 	public int getShortestPathDistance(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade)
 	{
-		if(currentMaze.graph[fromNodeIndex].neighbourhood.size()==0)//lair
+		if(currentMaze.graph[fromNodeIndex].numNeighbouringNodes==0)//lair
 			return 0;
 
-		return caches[mazeIndex].getPathDistanceFromA2B(fromNodeIndex,toNodeIndex,lastMoveMade);
+		return Mazes.getPathsCache(mazeIndex).getPathDistanceFromA2B(fromNodeIndex,toNodeIndex,lastMoveMade);
+	}
+	
+	/**
+	 * Returns the first move of the path returned by getShortestPath(fromNodeIndex,toNodeIndex,lastMoveMade),
+	 * i.e., the move to make to follow the shortest path without reversing. Like getShortestPathDistance(),
+	 * this is a constant-time look-up.
+	 *  
+	 * @param fromNodeIndex The node index from where to start (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param lastMoveMade The last move made
+	 * @return the next move along the path; MOVE.NEUTRAL if the target has been reached or from within the lair
+	 */
+	public MOVE getNextMoveOnShortestPath(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade)
+	{
+		if(currentMaze.graph[fromNodeIndex].numNeighbouringNodes==0)//lair
+			return MOVE.NEUTRAL;
+
+		return Mazes.getPathsCache(mazeIndex).getNextMoveFromA2B(fromNodeIndex,toNodeIndex,lastMoveMade);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package pacman.game;
+
+import java.util.ArrayDeque;
+
+/**
+ * A simple free-list of games for search code that needs many short-lived copies of the
+ * current game (roll-outs, tree searches etc.). Instead of calling game.copy() for every
+ * node, a copy is taken from the pool using copyOf(), which overwrites a previously released
+ * game with Game.copyInto(). Once the copy is no longer needed it should be handed back
+ * using release(). New games are only created when the pool has run dry.
+ * 
+ * The pool is not thread-safe: each controller (or each thread) should use its own pool.
+ */
+public final class GamePool
+{
+	private final ArrayDeque<Game> free;
+	
+	/**
+	 * Instantiates a new, empty pool.
+	 */
+	public GamePool()
+	{
+		free=new ArrayDeque<Game>();
+	}
+	
+	/**
+	 * Returns a copy of the game supplied, reusing a released game if one is available.
+	 * The copy's random number generator continues the stream of the game supplied, as in Game.copy().
+	 *
+	 * @param game The game to copy
+	 * @return A copy of the game
+	 */
+	public Game copyOf(ReadOnlyGame game)
+	{
+		Game copy=free.pollLast();
+		
+		if(copy==null)
+			return game.copy();
+		
+		game.copyInto(copy);
+		
+		return copy;
+	}
+	
+	/**
+	 * Returns a copy of the game supplied whose random number generator is seeded explicitly,
+	 * reusing a released game if one is available (see Game.copy(long)).
+	 *
+	 * @param game The game to copy
+	 * @param seed The seed for the copy's pseudo-random number generator
+	 * @return A copy of the game
+	 */
+	public Game copyOf(ReadOnlyGame game,long seed)
+	{
+		Game copy=free.pollLast();
+		
+		if(copy==null)
+			return game.copy(seed);
+		
+		game.copyInto(copy,seed);
+		
+		return copy;
+	}
+	
+	/**
+	 * Hands a game back to the pool. The game must not be used by the caller afterwards.
+	 *
+	 * @param game The game that is no longer required
+	 */
+	public void release(Game game)
+	{
+		free.addLast(game);
+	}
+	
+	/**
+	 * Returns the number of games currently available for reuse.
+	 *
+	 * @return the number of released games held by the pool
+	 */
+	public int size()
+	{
+		return free.size();
+	}
+}
@@ -25,7 +25,8 @@ import static pacman.game.Constants.*;
 @SuppressWarnings("serial")
 public final class GameView extends JComponent 
 {	
-    private final Game game;
+    private volatile ReadOnlyGame latest;	//the game to show, see setGame()
+    private ReadOnlyGame game;				//the game being painted
     private Images images;    
     private MOVE lastPacManMove;
     private int time;
@@ -46,15 +47,27 @@ public final class GameView extends JComponent
      *
      * @param game The game that is played.
      */
-    public GameView(Game game)
+    public GameView(ReadOnlyGame game)
     {
-        this.game=game;
+        this.game=latest=game;
        
         images=new Images();
         lastPacManMove=game.getPacmanLastMoveMade();
         time=game.getTotalTime();
     }
     
+    /**
+     * Shows the game specified from the next repaint onwards. The executor hands over a snapshot
+     * after every time step (see Game.snapshot()), so painting never sees a game half-way through
+     * an update.
+     *
+     * @param game The game to show
+     */
+    public void setGame(ReadOnlyGame game)
+    {
+    	latest=game;
+    }
+    
     ///////////////////////////////////////////////
     ////// Visual aids for debugging: start ///////
     ///////////////////////////////////////////////
@@ -66,7 +79,7 @@ public final class GameView extends JComponent
      * @param color Colour to be used
      * @param nodeIndices The node indices to be highlighted by the chosen colour
      */
-    public synchronized static void addPoints(Game game,Color color,int... nodeIndices)
+    public synchronized static void addPoints(ReadOnlyGame game,Color color,int... nodeIndices)
     {
     	if(isVisible)
     		for(int i=0;i<nodeIndices.length;i++)
@@ -81,7 +94,7 @@ public final class GameView extends JComponent
      * @param fromNnodeIndices The node indices where the lines start
      * @param toNodeIndices The node indices where the lines end
      */
-    public synchronized static void addLines(Game game,Color color,int[] fromNnodeIndices,int[] toNodeIndices)
+    public synchronized static void addLines(ReadOnlyGame game,Color color,int[] fromNnodeIndices,int[] toNodeIndices)
     {
     	if(isVisible)
     		for(int i=0;i<fromNnodeIndices.length;i++)
@@ -96,7 +109,7 @@ public final class GameView extends JComponent
      * @param fromNnodeIndex the from nnode index
      * @param toNodeIndex the to node index
      */
-    public synchronized static void addLines(Game game,Color color,int fromNnodeIndex,int toNodeIndex)
+    public synchronized static void addLines(ReadOnlyGame game,Color color,int fromNnodeIndex,int toNodeIndex)
     {
     	if(isVisible)
     		debugLines.add(new DebugLine(game.getNodeXCood(fromNnodeIndex),game.getNodeYCood(fromNnodeIndex),game.getNodeXCood(toNodeIndex),game.getNodeYCood(toNodeIndex),color));    	
@@ -162,6 +175,7 @@ public final class GameView extends JComponent
      */
     public void paintComponent(Graphics g) 
     {
+    	game=latest;
     	time=game.getTotalTime();
     	
     	if(offscreen==null)
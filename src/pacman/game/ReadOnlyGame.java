@@ -0,0 +1,727 @@
+package pacman.game;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+import pacman.game.Constants.DM;
+import pacman.game.Constants.GHOST;
+import pacman.game.Constants.MOVE;
+import pacman.game.internal.CorridorGraph;
+
+/**
+ * The queries a controller or a view may make about a game, without the methods that change
+ * it. Game implements this interface; code that only looks at a game should accept it rather
+ * than a Game, so that it may be handed a snapshot shared with others (see Game.snapshot()).
+ * Whoever needs to simulate ahead asks for a game of its own with copy(), which is the only
+ * point where the state is duplicated.
+ *
+ * The deprecated queries of Game (getAStarPath(), getApproximateShortestPath() and
+ * getApproximateShortestPathDistance()) are left out on purpose: new code should use
+ * getShortestPath() and getShortestPathDistance() instead.
+ * So is getCurrentMaze(): the maze is shared by all games and its arrays are not protected
+ * from being written, so it is only handed out by Game. Its contents are available through
+ * the queries below (e.g. getNeighbouringNodes(), getPillIndices() or getCorridorGraph());
+ * the arrays these return are shared as well, to keep them cheap, and must not be written to.
+ */
+public interface ReadOnlyGame
+{
+	/**
+	 * Gets the game state as a string: all variables are written to a string in a pre-determined
+	 * order. The string may later be used to recreate a game state using the setGameState() method.
+	 *
+	 * Variables not included: enableGlobalReversals
+	 *
+	 * @return The game state as a string
+	 */
+	String getGameState();
+	
+	/**
+	 * Returns an exact copy of the game. This may be used for forward searches
+	 * such as minimax. The copying is relatively efficient. The copy's random
+	 * number generator continues from where this game's generator is, so the copy
+	 * draws the same random events as this game would (a snapshot's own stream is
+	 * forked from the game's, see snapshot()); use copy(long) to fork the copy onto
+	 * a different stream of random events.
+	 *
+	 * @return the game
+	 */
+	Game copy();
+	
+	/**
+	 * Returns an exact copy of the game whose random number generator (used for
+	 * global reversals and for the moves of ghosts that cannot continue) is seeded
+	 * explicitly. Copies made with the same seed from the same state will play out
+	 * identically given the same moves.
+	 *
+	 * @param seed The seed for the copy's pseudo-random number generator
+	 * @return the game
+	 */
+	Game copy(long seed);
+	
+	/**
+	 * Copies the state of this game into an existing game, overwriting all of its variables.
+	 * Unlike copy(), no new objects are allocated (apart from the rare case where the target
+	 * has to grow its pill sets), so a search may keep reusing the same few game objects.
+	 * The target's random number generator continues from where this game's is (see copy()).
+	 *
+	 * @param target The game to be overwritten
+	 */
+	void copyInto(Game target);
+	
+	/**
+	 * Copies the state of this game into an existing game and re-seeds the target's random
+	 * number generator explicitly (see copy(long)).
+	 *
+	 * @param target The game to be overwritten
+	 * @param seed The seed for the target's pseudo-random number generator
+	 */
+	void copyInto(Game target,long seed);
+	
+	/**
+	 * Returns whether pacman was eaten in the last time step
+	 * 
+	 * @return whether Ms Pac-Man was eaten.
+	 */
+	boolean wasPacManEaten();
+	
+	/**
+	 * Returns whether a ghost was eaten in the last time step
+	 * 
+	 * @return whether a ghost was eaten.
+	 */
+	boolean wasGhostEaten(GHOST ghost);
+	
+	/**
+	 * Returns the number of ghosts eaten in the last time step.
+	 *
+	 * @return the number of ghosts eaten
+	 */
+	int getNumGhostsEaten();
+	
+	/**
+	 * Returns whether a pill was eaten in the last time step
+	 * 
+	 * @return whether a pill was eaten.
+	 */
+	boolean wasPillEaten();
+	
+	/**
+	 * Returns whether a power pill was eaten in the last time step
+	 * 
+	 * @return whether a power pill was eaten.
+	 */
+	boolean wasPowerPillEaten();
+	
+	/**
+	 * Returns the time when the last global reversal event took place.
+	 * 
+	 * @return time the last global reversal event took place (not including power pill reversals)
+	 */
+	int getTimeOfLastGlobalReversal();
+	
+	/**
+	 * Checks whether the game is over or not: all lives are lost or 16 levels have been 
+	 * played. The variable is set by the methods _feast() and _checkLevelState().
+	 *
+	 * @return true, if successful
+	 */
+	boolean gameOver();
+	
+	/**
+	 * Returns the junctions of the current maze and the corridors between them. The graph
+	 * is immutable and shared by all games; the pills left in each corridor are available
+	 * from getNumberOfActivePillsInCorridor() and getNumberOfActivePowerPillsInCorridor().
+	 * 
+	 * @return The corridor graph of the current maze.
+	 */
+	CorridorGraph getCorridorGraph();
+	
+	/**
+	 * Returns the number of pills still available in the corridor specified. The counts are
+	 * kept up to date as the pills are eaten, so this is a simple look-up. Pills on junctions
+	 * do not belong to any corridor.
+	 *
+	 * @param corridor The corridor (see getCorridorGraph())
+	 * @return The number of pills left in the corridor
+	 */
+	int getNumberOfActivePillsInCorridor(int corridor);
+	
+	/**
+	 * Returns the number of power pills still available in the corridor specified.
+	 *
+	 * @param corridor The corridor (see getCorridorGraph())
+	 * @return The number of power pills left in the corridor
+	 */
+	int getNumberOfActivePowerPillsInCorridor(int corridor);
+	
+	/**
+	 * Returns the x coordinate of the specified node.
+	 *
+	 * @param nodeIndex the node index
+	 * @return the node x cood
+	 */
+	int getNodeXCood(int nodeIndex);
+	
+	/**
+	 * Returns the y coordinate of the specified node.
+	 *
+	 * @param nodeIndex The node index
+	 * @return The node's y coordinate
+	 */
+	int getNodeYCood(int nodeIndex);
+	
+	/**
+	 * Gets the index of the current maze.
+	 *
+	 * @return The maze index
+	 */
+	int getMazeIndex();
+	
+	/**
+	 * Returns the current level.
+	 *
+	 * @return The current level
+	 */
+	int getCurrentLevel();
+	
+	/**
+	 * Returns the number of nodes in the current maze.
+	 * 
+	 * @return number of nodes in the current maze.
+	 */
+	int getNumberOfNodes();
+	
+	/**
+	 * Returns the current value awarded for eating a ghost.
+	 * 
+	 * @return the current value awarded for eating a ghost.
+	 */
+	int getGhostCurrentEdibleScore();
+	
+	/**
+	 * Returns the node index where ghosts start in the maze once leaving
+	 * the lair.
+	 * 
+	 * @return the node index where ghosts start after leaving the lair.
+	 */
+	int getGhostInitialNodeIndex();
+	
+	/**
+	 * Whether the pill specified is still there or has been eaten.
+	 *
+	 * @param pillIndex The pill index
+	 * @return true, if is pill still available
+	 */
+	boolean isPillStillAvailable(int pillIndex);
+	
+	/**
+	 * Whether the power pill specified is still there or has been eaten.
+	 *
+	 * @param powerPillIndex The power pill index
+	 * @return true, if is power pill still available
+	 */
+	boolean isPowerPillStillAvailable(int powerPillIndex);
+	
+	/**
+	 * Returns the pill index of the node specified. This can be -1 if there
+	 * is no pill at the specified node.
+	 * 
+	 * @param nodeIndex The Index of the node.
+	 * @return a number corresponding to the pill index (or -1 if node has no pill)
+	 */
+	int getPillIndex(int nodeIndex);
+	
+	/**
+	 * Returns the power pill index of the node specified. This can be -1 if there
+	 * is no power pill at the specified node.
+	 * 
+	 * @param nodeIndex The Index of the node.
+	 * @return a number corresponding to the power pill index (or -1 if node has no pill)
+	 */
+	int getPowerPillIndex(int nodeIndex);
+	
+	/**
+	 * Returns the array of node indices that are junctions (3 or more neighbours).
+	 * 
+	 * @return the junction indices
+	 */
+	int[] getJunctionIndices();
+	
+	/**
+	 * Returns the indices to all the nodes that have pills.
+	 *
+	 * @return the pill indices
+	 */
+	int[] getPillIndices();
+	
+	/**
+	 * Returns the indices to all the nodes that have power pills.
+	 *
+	 * @return the power pill indices
+	 */
+	int[] getPowerPillIndices();
+	
+	/**
+	 * Current node index of Ms Pac-Man.
+	 *
+	 * @return the pacman current node index
+	 */
+	int getPacmanCurrentNodeIndex();
+	
+	/**
+	 * Current node index of Ms Pac-Man.
+	 *
+	 * @return the pacman last move made
+	 */
+	MOVE getPacmanLastMoveMade();
+	
+	/**
+	 * Lives that remain for Ms Pac-Man.
+	 *
+	 * @return the number of lives remaining
+	 */
+	int getPacmanNumberOfLivesRemaining();
+	
+	/**
+	 * Current node at which the specified ghost resides.
+	 *
+	 * @param ghostType the ghost type
+	 * @return the ghost current node index
+	 */
+	int getGhostCurrentNodeIndex(GHOST ghostType);
+	
+	/**
+	 * Current direction of the specified ghost.
+	 *
+	 * @param ghostType the ghost type
+	 * @return the ghost last move made
+	 */
+	MOVE getGhostLastMoveMade(GHOST ghostType);
+	
+	/**
+	 * Returns the edible time for the specified ghost.
+	 *
+	 * @param ghostType the ghost type
+	 * @return the ghost edible time
+	 */
+	int getGhostEdibleTime(GHOST ghostType);
+	
+	/**
+	 * Simpler check to see if a ghost is edible.
+	 *
+	 * @param ghostType the ghost type
+	 * @return true, if is ghost edible
+	 */
+	boolean isGhostEdible(GHOST ghostType);
+	
+	/**
+	 * Returns the score of the game.
+	 *
+	 * @return the score
+	 */
+	int getScore();
+	
+	/**
+	 * Returns the time of the current level (important with respect to LEVEL_LIMIT).
+	 *
+	 * @return the current level time
+	 */
+	int getCurrentLevelTime();
+	
+	/**
+	 * Total time the game has been played for (at most LEVEL_LIMIT*MAX_LEVELS).
+	 *
+	 * @return the total time
+	 */
+	int getTotalTime();
+	
+	/**
+	 * Total number of pills in the mazes[gs.curMaze]
+	 *
+	 * @return the number of pills
+	 */
+	int getNumberOfPills();
+	
+	/**
+	 * Total number of power pills in the mazes[gs.curMaze]
+	 *
+	 * @return the number of power pills
+	 */
+	int getNumberOfPowerPills();
+	
+	/**
+	 * Total number of pills in the mazes[gs.curMaze]
+	 *
+	 * @return the number of active pills
+	 */
+	int getNumberOfActivePills();
+	
+	/**
+	 * Total number of power pills in the mazes[gs.curMaze]
+	 *
+	 * @return the number of active power pills
+	 */
+	int getNumberOfActivePowerPills();
+	
+	/**
+	 * Time left that the specified ghost will spend in the lair.
+	 *
+	 * @param ghostType the ghost type
+	 * @return the ghost lair time
+	 */
+	int getGhostLairTime(GHOST ghostType);
+	
+	/**
+	 * returns the indices of all active pills in the mazes[gs.curMaze]
+	 *
+	 * @return the active pills indices
+	 */
+	int[] getActivePillsIndices();
+	
+	/**
+	 * returns the indices of all active power pills in the mazes[gs.curMaze]
+	 *
+	 * @return the active power pills indices
+	 */
+	int[] getActivePowerPillsIndices();
+	
+	/**
+	 * Returns the node index of one of the active pills, without allocating anything: together
+	 * with getNumberOfActivePills(), this is a read-only view of the active pills. The order of
+	 * the pills is arbitrary (unlike getActivePillsIndices(), which lists them in the order of the
+	 * pill indices) and changes as pills are eaten.
+	 *
+	 * @param i The position of the pill, from 0 to getNumberOfActivePills()-1
+	 * @return The node index of the pill
+	 */
+	int getActivePillNodeIndex(int i);
+	
+	/**
+	 * Returns the node index of one of the active power pills (see getActivePillNodeIndex()).
+	 *
+	 * @param i The position of the power pill, from 0 to getNumberOfActivePowerPills()-1
+	 * @return The node index of the power pill
+	 */
+	int getActivePowerPillNodeIndex(int i);
+	
+	/**
+	 * Passes the node index of every active pill to the action specified, in time proportional
+	 * to the number of active pills and without allocating an array. The order is arbitrary.
+	 *
+	 * @param action The action to perform for each pill
+	 */
+	void forEachActivePill(IntConsumer action);
+	
+	/**
+	 * Passes the node index of every active power pill to the action specified (see forEachActivePill()).
+	 *
+	 * @param action The action to perform for each power pill
+	 */
+	void forEachActivePowerPill(IntConsumer action);
+	
+	/**
+	 * If in lair (getLairTime(-)>0) or if not at junction.
+	 *
+	 * @param ghostType the ghost type
+	 * @return true, if successful
+	 */
+	boolean doesGhostRequireAction(GHOST ghostType);
+	
+	/**
+	 * Checks if the node specified by the nodeIndex is a junction.
+	 *
+	 * @param nodeIndex the node index
+	 * @return true, if is junction
+	 */
+	boolean isJunction(int nodeIndex);
+	
+	/**
+	 * Gets the possible moves from the node index specified.
+	 *
+	 * @param nodeIndex The current node index
+	 * @return The set of possible moves
+	 */
+	MOVE[] getPossibleMoves(int nodeIndex);
+	
+	/**
+	 * Gets the possible moves except the one that corresponds to the reverse of the move supplied.
+	 *
+	 * @param nodeIndex The current node index
+	 * @param lastModeMade The last mode made (possible moves will exclude the reverse)
+	 * @return The set of possible moves
+	 */
+	MOVE[] getPossibleMoves(int nodeIndex,MOVE lastModeMade);
+	
+	/**
+	 * Gets the neighbouring nodes from the current node index.
+	 *
+	 * @param nodeIndex The current node index
+	 * @return The set of neighbouring nodes
+	 */
+	int[] getNeighbouringNodes(int nodeIndex);
+	
+	/**
+	 * Gets the neighbouring nodes from the current node index excluding the node 
+	 * that corresponds to the opposite of the last move made which is given as an argument.
+	 *
+	 * @param nodeIndex The current node index
+	 * @param lastModeMade The last mode made
+	 * @return The set of neighbouring nodes except the one that is opposite of the last move made
+	 */
+	int[] getNeighbouringNodes(int nodeIndex,MOVE lastModeMade);
+	
+	/**
+	 * Method that returns the direction to take given a node index and an index of a neighbouring
+	 * node. Returns null if the neighbour is invalid.
+	 *
+	 * @param currentNodeIndex The current node index.
+	 * @param neighbourNodeIndex The direct neighbour (node index) of the current node.
+	 * @return the move to make to reach direct neighbour
+	 */
+	MOVE getMoveToMakeToReachDirectNeighbour(int currentNodeIndex,int neighbourNodeIndex);
+	
+	/**
+	 * Returns the PATH distance from any node to any other node.
+	 *
+	 * @param fromNodeIndex the from node index
+	 * @param toNodeIndex the to node index
+	 * @return the shortest path distance
+	 */
+	int getShortestPathDistance(int fromNodeIndex,int toNodeIndex);
+	
+	/**
+	 * Returns the EUCLEDIAN distance between two nodes in the current mazes[gs.curMaze].
+	 *
+	 * @param fromNodeIndex the from node index
+	 * @param toNodeIndex the to node index
+	 * @return the euclidean distance
+	 */
+	double getEuclideanDistance(int fromNodeIndex,int toNodeIndex);
+	
+	/**
+	 * Returns the MANHATTAN distance between two nodes in the current mazes[gs.curMaze].
+	 *
+	 * @param fromNodeIndex the from node index
+	 * @param toNodeIndex the to node index
+	 * @return the manhattan distance
+	 */
+	int getManhattanDistance(int fromNodeIndex,int toNodeIndex);
+	
+	/**
+	 * Gets the distance.
+	 *
+	 * @param fromNodeIndex the from node index
+	 * @param toNodeIndex the to node index
+	 * @param distanceMeasure the distance measure
+	 * @return the distance
+	 */
+	double getDistance(int fromNodeIndex,int toNodeIndex,DM distanceMeasure);
+	
+	/**
+	 * Returns the distance between two nodes taking reversals into account.
+	 *
+	 * @param fromNodeIndex the index of the originating node
+	 * @param toNodeIndex the index of the target node
+	 * @param lastMoveMade the last move made
+	 * @param distanceMeasure the distance measure to be used
+	 * @return the distance between two nodes.
+	 */
+	double getDistance(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade,DM distanceMeasure);
+	
+	/**
+	 * Gets the closest node index from node index.
+	 *
+	 * @param fromNodeIndex the from node index
+	 * @param targetNodeIndices the target node indices
+	 * @param distanceMeasure the distance measure
+	 * @return the closest node index from node index
+	 */
+	int getClosestNodeIndexFromNodeIndex(int fromNodeIndex,int[] targetNodeIndices,DM distanceMeasure);
+	
+	/**
+	 * Gets the farthest node index from node index.
+	 *
+	 * @param fromNodeIndex the from node index
+	 * @param targetNodeIndices the target node indices
+	 * @param distanceMeasure the distance measure
+	 * @return the farthest node index from node index
+	 */
+	int getFarthestNodeIndexFromNodeIndex(int fromNodeIndex,int[] targetNodeIndices,DM distanceMeasure);
+	
+	/**
+	 * Returns the active pill closest to the node specified (shortest path distance). The same as
+	 * getClosestNodeIndexFromNodeIndex(nodeIndex,getActivePillsIndices(),DM.PATH), including the
+	 * way ties are broken, but the pills are looked up in a list pre-sorted by distance, so the
+	 * search stops at the first pill that has not been eaten yet.
+	 *
+	 * @param nodeIndex The node to search from
+	 * @return The node index of the closest active pill, -1 if there is none
+	 */
+	int getClosestActivePillNodeIndex(int nodeIndex);
+	
+	/**
+	 * Returns the active power pill closest to the node specified (see getClosestActivePillNodeIndex()).
+	 *
+	 * @param nodeIndex The node to search from
+	 * @return The node index of the closest active power pill, -1 if there is none
+	 */
+	int getClosestActivePowerPillNodeIndex(int nodeIndex);
+	
+	/**
+	 * Finds the active pills closest to the node specified, in order of increasing shortest path
+	 * distance (see getClosestActivePillNodeIndex()). The number of pills asked for is the length
+	 * of the array supplied, which is filled from the start.
+	 *
+	 * @param nodeIndex The node to search from
+	 * @param closest The array to store the node indices of the pills in
+	 * @return The number of pills found, fewer than asked for if not enough pills are left
+	 */
+	int getClosestActivePillNodeIndices(int nodeIndex,int[] closest);
+	
+	/**
+	 * Finds the active pills whose shortest path distance from the node specified is at most the
+	 * distance given, in order of increasing distance. At most as many pills as fit into the array
+	 * supplied are returned (the closest ones).
+	 *
+	 * @param nodeIndex The node to search from
+	 * @param maxDistance The largest distance of a pill to be included
+	 * @param pillNodeIndices The array to store the node indices of the pills in
+	 * @return The number of pills found
+	 */
+	int getActivePillNodeIndicesWithinDistance(int nodeIndex,int maxDistance,int[] pillNodeIndices);
+	
+	/**
+	 * Gets the next move towards target.
+	 *
+	 * @param fromNodeIndex the from node index
+	 * @param toNodeIndex the to node index
+	 * @param distanceMeasure the distance measure
+	 * @return the next move towards target
+	 */
+	MOVE getNextMoveTowardsTarget(int fromNodeIndex,int toNodeIndex,DM distanceMeasure);
+	
+	/**
+	 * Gets the next move away from target.
+	 *
+	 * @param fromNodeIndex the from node index
+	 * @param toNodeIndex the to node index
+	 * @param distanceMeasure the distance measure
+	 * @return the next move away from target
+	 */
+	MOVE getNextMoveAwayFromTarget(int fromNodeIndex,int toNodeIndex,DM distanceMeasure);
+	
+	/**
+	 * Gets the approximate next move towards target not considering directions opposing the last move made.
+	 *
+	 * @param fromNodeIndex The node index from which to move (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param lastMoveMade The last move made
+	 * @param distanceMeasure The distance measure required (Manhattan, Euclidean or Straight line)
+	 * @return The approximate next move towards target (chosen greedily)
+	 */
+	MOVE getApproximateNextMoveTowardsTarget(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade, DM distanceMeasure);
+	
+	/**
+	 * Gets the approximate next move away from a target not considering directions opposing the last move made.
+	 *
+	 * @param fromNodeIndex The node index from which to move (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param lastMoveMade The last move made
+	 * @param distanceMeasure The distance measure required (Manhattan, Euclidean or Straight line)
+	 * @return The approximate next move towards target (chosen greedily)
+	 */
+	MOVE getApproximateNextMoveAwayFromTarget(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade, DM distanceMeasure);
+	
+	/**
+	 * Gets the exact next move towards target taking into account reversals. This uses the pre-computed paths.
+	 *
+	 * @param fromNodeIndex The node index from which to move (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param lastMoveMade The last move made
+	 * @param distanceMeasure the distance measure to be used
+	 * @return the next move towards target
+	 */
+	MOVE getNextMoveTowardsTarget(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade, DM distanceMeasure);
+	
+	/**
+	 * Gets the exact next move away from target taking into account reversals. This uses the pre-computed paths.
+	 *
+	 * @param fromNodeIndex The node index from which to move (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param lastMoveMade The last move made
+	 * @param distanceMeasure the distance measure to be used
+	 * @return the next move away from target
+	 */
+	MOVE getNextMoveAwayFromTarget(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade, DM distanceMeasure);
+	
+	/**
+	 * Gets the shortest path from node A to node B as specified by their indices.
+	 *
+	 * @param fromNodeIndex The node index from where to start (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @return the shortest path from start to target
+	 */
+	int[] getShortestPath(int fromNodeIndex,int toNodeIndex);
+	
+	/**
+	 * Visits the nodes of the shortest path from node A to node B, in order, without creating the
+	 * path: the same nodes as returned by getShortestPath(fromNodeIndex,toNodeIndex) are passed to
+	 * the visitor, which may stop the walk early by returning false. Useful when the path is only
+	 * scanned once, e.g., to check whether a ghost blocks it.
+	 *
+	 * @param fromNodeIndex The node index from where to start (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param visitor Called with each node index on the path; returns false to stop
+	 * @return true if all nodes were visited, false if the visitor stopped the walk
+	 */
+	boolean forEachNodeOnPath(int fromNodeIndex,int toNodeIndex,IntPredicate visitor);
+	
+	/**
+	 * Visits the nodes of the shortest path from node A to node B taking into account the last move
+	 * made (i.e., no reversals), in order, without creating the path: the same nodes as returned by
+	 * getShortestPath(fromNodeIndex,toNodeIndex,lastMoveMade) are passed to the visitor, which may
+	 * stop the walk early by returning false.
+	 *
+	 * @param fromNodeIndex The node index from where to start (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param lastMoveMade The last move made
+	 * @param visitor Called with each node index on the path; returns false to stop
+	 * @return true if all nodes were visited, false if the visitor stopped the walk
+	 */
+	boolean forEachNodeOnPath(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade,IntPredicate visitor);
+	
+	/**
+	 * Gets the shortest path taking into account the last move made (i.e., no reversals).
+	 * This is approximate only as the path is computed greedily. A more accurate path can be obtained
+	 * using A* which is slightly more costly.
+	 *
+	 * @param fromNodeIndex The node index from where to start (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param lastMoveMade The last move made
+	 * @return the shortest path from start to target
+	 */
+	int[] getShortestPath(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade);
+	
+	/**
+	 * Similar to getShortestPath but returns the distance of the path only. The distance is
+	 * looked up in constant time from tables built the first time it is needed.
+	 *  
+	 * @param fromNodeIndex The node index from where to start (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param lastMoveMade The last move made
+	 * @return the exact distance of the path
+	 */
+	int getShortestPathDistance(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade);
+	
+	/**
+	 * Returns the first move of the path returned by getShortestPath(fromNodeIndex,toNodeIndex,lastMoveMade),
+	 * i.e., the move to make to follow the shortest path without reversing. Like getShortestPathDistance(),
+	 * this is a constant-time look-up.
+	 *  
+	 * @param fromNodeIndex The node index from where to start (i.e., current position)
+	 * @param toNodeIndex The target node index
+	 * @param lastMoveMade The last move made
+	 * @return the next move along the path; MOVE.NEUTRAL if the target has been reached or from within the lair
+	 */
+	MOVE getNextMoveOnShortestPath(int fromNodeIndex,int toNodeIndex,MOVE lastMoveMade);
+}
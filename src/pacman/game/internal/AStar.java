@@ -1,195 +1,265 @@
 package pacman.game.internal;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.EnumMap;
-import java.util.PriorityQueue;
+import java.util.Arrays;
 
 import pacman.game.Game;
 import pacman.game.Constants.MOVE;
 
+import static pacman.game.internal.Maze.NUM_MOVES;
+
 /*
- * This class is used to compute the shortest path for the ghosts: as these may not reverse, one cannot use 
+ * This class is used to compute the shortest path for the ghosts: as these may not reverse, one cannot use
  * a simple look-up table. Instead, we use the pre-computed shortest path distances as an admissable
  * heuristic. Although AStar needs to be run every time a path is to be found, it is very quick and does
  * not expand too many nodes beyond those on the optimal path.
+ *
+ * The search state is kept in primitive arrays indexed by node, and the open list is a binary heap that knows
+ * the position of each node in it, so membership tests and removals take constant and logarithmic time. Instead
+ * of clearing the arrays after each search, every search uses a new generation number: the state of a node is
+ * only valid if its stamp matches the current generation. Apart from the path returned, a search allocates
+ * nothing. The heap follows the same sift rules as java.util.PriorityQueue, so ties are broken exactly as before.
+ *
+ * The graph itself is never modified by a search, while the search state belongs to the calling thread (one
+ * workspace per thread and graph). A single instance can thus be used by any number of threads at the same time
+ * without locking, e.g. by games running in parallel on the same maze.
  */
 public class AStar
 {
-	private N[] graph;
-	
+	private static final byte OPEN=1, CLOSED=2;
+	private static final MOVE[] MOVES=MOVE.values();
+
+	private volatile int[] neighbours;			//NUM_MOVES*node+move, -1 if there is no neighbour
+	private final ThreadLocal<Search> searches=new ThreadLocal<Search>();
+
 	public void createGraph(Node[] nodes)
 	{
-		graph=new N[nodes.length];
-		
-		//create graph
-		for(int i=0;i<nodes.length;i++)
-			graph[i]=new N(nodes[i].nodeIndex);
-		
-		//add neighbours
+		int[] table=new int[NUM_MOVES*nodes.length];
+		Arrays.fill(table,-1);
+
 		for(int i=0;i<nodes.length;i++)
-		{	
-			EnumMap<MOVE,Integer> neighbours=nodes[i].neighbourhood;
-			MOVE[] moves=MOVE.values();
-			
-			for(int j=0;j<moves.length;j++)
-				if(neighbours.containsKey(moves[j]))
-					graph[i].adj.add(new E(graph[neighbours.get(moves[j])],moves[j],1));	
-		}
+			for(int j=0;j<MOVES.length;j++)
+			{
+				Integer neighbour=nodes[i].neighbourhood.get(MOVES[j]);
+
+				if(neighbour!=null)
+					table[NUM_MOVES*i+j]=neighbour;
+			}
+
+		neighbours=table;
 	}
-	
-	public synchronized int[] computePathsAStar(int s, int t, MOVE lastMoveMade, Game game)
-    {	
-		N start=graph[s];
-		N target=graph[t];
-		
-        PriorityQueue<N> open = new PriorityQueue<N>();
-        ArrayList<N> closed = new ArrayList<N>();
-
-        start.g = 0;
-        start.h = game.getShortestPathDistance(start.index, target.index);
-
-        start.reached=lastMoveMade;
-        
-        open.add(start);
-
-        while(!open.isEmpty())
+
+	public int[] computePathsAStar(int s, int t, MOVE lastMoveMade, Game game)
+    {
+		int[] neighbours=this.neighbours;
+		Search w=search(neighbours.length/NUM_MOVES);
+
+		w.newGeneration();
+		w.visit(s,0,game.getShortestPathDistance(s,t),-1,lastMoveMade==null ? MOVE.NEUTRAL.ordinal() : lastMoveMade.ordinal());
+		w.push(s);
+
+        while(w.size>0)
         {
-            N currentNode = open.poll();
-            closed.add(currentNode);
-            
-            if (currentNode.isEqual(target))
+            int current=w.poll();
+            w.state[current]=CLOSED;
+
+            if(current==t)
                 break;
 
-            for(E next : currentNode.adj)
+            int excluded=Maze.opposite[w.reached[current]];
+
+            for(int move=0;move<NUM_MOVES;move++)
             {
-            	if(next.move!=currentNode.reached.opposite())
-            	{
-	                double currentDistance = next.cost;
-	
-	                if (!open.contains(next.node) && !closed.contains(next.node))
-	                {
-	                    next.node.g = currentDistance + currentNode.g;
-	                    next.node.h = game.getShortestPathDistance(next.node.index, target.index);
-	                    next.node.parent = currentNode;
-	                    
-	                    next.node.reached=next.move;
-	
-	                    open.add(next.node);
-	                }
-	                else if (currentDistance + currentNode.g < next.node.g)
-	                {
-	                    next.node.g = currentDistance + currentNode.g;
-	                    next.node.parent = currentNode;
-	                    
-	                    next.node.reached=next.move;
-	
-	                    if (open.contains(next.node))
-	                        open.remove(next.node);
-	
-	                    if (closed.contains(next.node))
-	                        closed.remove(next.node);
-	
-	                    open.add(next.node);
-	                }
-	            }
-            }
-        }
+            	int next=neighbours[NUM_MOVES*current+move];
 
-        return extractPath(target);
-    }
-	
-	public synchronized int[] computePathsAStar(int s, int t, Game game)
-    {	
-		return computePathsAStar(s, t, MOVE.NEUTRAL, game);
-    }
+            	if(next==-1 || move==excluded)
+            		continue;
 
-    private synchronized int[] extractPath(N target)
-    {
-    	ArrayList<Integer> route = new ArrayList<Integer>();
-        N current = target;
-        route.add(current.index);
+            	int distance=w.g[current]+1;
 
-        while (current.parent != null)
-        {
-            route.add(current.parent.index);
-            current = current.parent;
-        }
-        
-        Collections.reverse(route);
-
-        int[] routeArray=new int[route.size()];
-        
-        for(int i=0;i<routeArray.length;i++)
-        	routeArray[i]=route.get(i);
-        
-        return routeArray;
-    }
-    
-    public void resetGraph()
-    {
-    	for(N node : graph)
-    	{
-    		node.g=0;
-    		node.h=0;
-    		node.parent=null;
-    		node.reached=null;
-    	}
-    }
-}
+            	if(w.stamp[next]!=w.generation)
+            	{
+            		w.visit(next,distance,game.getShortestPathDistance(next,t),current,move);
+            		w.push(next);
+            	}
+            	else if(distance<w.g[next])
+            	{
+            		if(w.state[next]==OPEN)
+            			w.remove(next);
 
-class N implements Comparable<N>
-{
-    public N parent;
-    public double g, h;
-    public boolean visited = false;
-    public ArrayList<E> adj;
-    public int index;
-    public MOVE reached=null;
-
-    public N(int index)
-    {
-        adj = new ArrayList<E>();
-        this.index=index;
-    }
+            		w.f[next]+=distance-w.g[next];
+            		w.g[next]=distance;
+            		w.parent[next]=current;
+            		w.reached[next]=(byte)move;
+            		w.push(next);
+            	}
+            }
+        }
 
-    public N(double g, double h)
-    {
-        this.g = g;
-        this.h = h;
+        return w.extractPath(t);
     }
 
-    public boolean isEqual(N another)
+	public int[] computePathsAStar(int s, int t, Game game)
     {
-        return index == another.index;
+		return computePathsAStar(s, t, MOVE.NEUTRAL, game);
     }
 
-    public String toString()
-    {
-        return ""+index;
-    }
+	/*
+	 * Searches no longer need the graph to be reset; this method is kept for callers written against the
+	 * previous implementation and does nothing.
+	 */
+	public void resetGraph()
+	{
+	}
 
-	public int compareTo(N another)
+	//Returns the workspace of the calling thread, (re)creating it if the graph has changed size.
+	private Search search(int numNodes)
 	{
-      if ((g + h) < (another.g + another.h))
-    	  return -1;
-      else  if ((g + h) > (another.g + another.h))
-    	  return 1;
-		
-		return 0;
+		Search w=searches.get();
+
+		if(w==null || w.g.length!=numNodes)
+		{
+			w=new Search(numNodes);
+			searches.set(w);
+		}
+
+		return w;
 	}
-}
 
-class E
-{
-	public N node;
-	public MOVE move;
-	public double cost;
-	
-	public E(N node,MOVE move,double cost)
+	//The state of the searches of a single thread: per-node arrays and the indexed binary heap ordered by f.
+	private static final class Search
 	{
-		this.node=node;
-		this.move=move;
-		this.cost=cost;
+		final int[] g, f, parent, stamp, heapIndex, heap;
+		final byte[] reached, state;
+		int size, generation;
+
+		Search(int numNodes)
+		{
+			g=new int[numNodes];
+			f=new int[numNodes];
+			parent=new int[numNodes];
+			stamp=new int[numNodes];
+			heapIndex=new int[numNodes];
+			heap=new int[numNodes];
+			reached=new byte[numNodes];
+			state=new byte[numNodes];
+		}
+
+		void newGeneration()
+		{
+			if(++generation==Integer.MAX_VALUE)
+			{
+				Arrays.fill(stamp,0);
+				generation=1;
+			}
+
+			size=0;
+		}
+
+		void visit(int node, int distance, int heuristic, int from, int move)
+		{
+			stamp[node]=generation;
+			g[node]=distance;
+			f[node]=distance+heuristic;
+			parent[node]=from;
+			reached[node]=(byte)move;
+		}
+
+		int[] extractPath(int t)
+		{
+			//the target is part of the path even if it could not be reached
+			int length=1;
+
+			if(stamp[t]==generation)
+				for(int node=t;parent[node]!=-1;node=parent[node])
+					length++;
+
+			int[] route=new int[length];
+			int node=t;
+
+			for(int i=length-1;i>=0;i--)
+			{
+				route[i]=node;
+
+				if(i>0)
+					node=parent[node];
+			}
+
+			return route;
+		}
+
+		void push(int node)
+		{
+			state[node]=OPEN;
+			siftUp(size++,node);
+		}
+
+		int poll()
+		{
+			int result=heap[0];
+			int last=heap[--size];
+
+			if(size>0)
+				siftDown(0,last);
+
+			return result;
+		}
+
+		void remove(int node)
+		{
+			int i=heapIndex[node];
+			int last=heap[--size];
+
+			if(i!=size)
+			{
+				siftDown(i,last);
+
+				if(heap[i]==last)
+					siftUp(i,last);
+			}
+		}
+
+		private void siftUp(int k, int node)
+		{
+			while(k>0)
+			{
+				int p=(k-1)>>>1;
+				int e=heap[p];
+
+				if(f[node]>=f[e])
+					break;
+
+				heap[k]=e;
+				heapIndex[e]=k;
+				k=p;
+			}
+
+			heap[k]=node;
+			heapIndex[node]=k;
+		}
+
+		private void siftDown(int k, int node)
+		{
+			int half=size>>>1;
+
+			while(k<half)
+			{
+				int child=2*k+1;
+				int c=heap[child];
+				int right=child+1;
+
+				if(right<size && f[c]>f[heap[right]])
+					c=heap[child=right];
+
+				if(f[node]<=f[c])
+					break;
+
+				heap[k]=c;
+				heapIndex[c]=k;
+				k=child;
+			}
+
+			heap[k]=node;
+			heapIndex[node]=k;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+package pacman.game.internal;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import pacman.game.Constants.MOVE;
+import pacman.game.Game;
+
+/*
+ * Measures the throughput of A* searches when several threads share the same maze, as games running in parallel do.
+ * Each thread runs the same number of searches between random pairs of nodes of the first maze; the total number of
+ * searches per second is reported for 1, 2, 4, ... threads up to the number of cores (or the counts given as
+ * arguments). With thread-confined search state the throughput should grow with the number of threads until the
+ * cores are used up.
+ *
+ * Usage: java pacman.game.internal.AStarBenchmark [threads ...]
+ */
+public final class AStarBenchmark
+{
+	private static final int SEARCHES=200000;	//per thread and run
+	private static final int WARMUP=50000;
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		Game game=new Game(0,0);
+		Maze maze=game.getCurrentMaze();
+
+		int[] threadCounts;
+
+		if(args.length>0)
+		{
+			threadCounts=new int[args.length];
+
+			for(int i=0;i<args.length;i++)
+				threadCounts[i]=Integer.parseInt(args[i]);
+		}
+		else
+		{
+			int cores=Runtime.getRuntime().availableProcessors();
+			threadCounts=new int[32-Integer.numberOfLeadingZeros(cores)+(Integer.bitCount(cores)==1 ? 0 : 1)];
+
+			for(int i=0;i<threadCounts.length;i++)
+				threadCounts[i]=Math.min(1<<i,cores);
+		}
+
+		run(maze,game,1,WARMUP);
+
+		System.out.println("threads\tsearches/s\tspeed-up");
+
+		double base=0;
+
+		for(int threads : threadCounts)
+		{
+			double throughput=run(maze,game,threads,SEARCHES);
+
+			if(base==0)
+				base=throughput/threads;
+
+			System.out.printf("%d\t%.0f\t%.2f%n",threads,throughput,throughput/base);
+		}
+	}
+
+	//Runs the given number of searches on each of the threads and returns the number of searches per second.
+	private static double run(Maze maze,Game game,int threads,int searches) throws InterruptedException
+	{
+		CountDownLatch start=new CountDownLatch(1);
+		CountDownLatch done=new CountDownLatch(threads);
+		long[] checksums=new long[threads];
+		MOVE[] moves=MOVE.values();
+
+		for(int i=0;i<threads;i++)
+		{
+			final int id=i;
+
+			new Thread(() -> {
+				Random rnd=new Random(id);
+				long checksum=0;
+
+				try
+				{
+					start.await();
+
+					for(int j=0;j<searches;j++)
+					{
+						int from=rnd.nextInt(maze.graph.length);
+						int to=rnd.nextInt(maze.graph.length);
+
+						checksum+=maze.astar.computePathsAStar(from,to,moves[rnd.nextInt(moves.length)],game).length;
+					}
+				}
+				catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+
+				checksums[id]=checksum;
+				done.countDown();
+			}).start();
+		}
+
+		long time=System.nanoTime();
+		start.countDown();
+		done.await();
+		time=System.nanoTime()-time;
+
+		return threads*(double)searches/(time/1e9);
+	}
+}
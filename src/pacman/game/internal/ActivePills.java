@@ -0,0 +1,131 @@
+package pacman.game.internal;
+
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/*
+ * The pills (or power pills) of a maze that have not been eaten yet, kept as a dense list so that they can be
+ * enumerated in time proportional to their number rather than to the number of pills of the maze. A pill is removed
+ * by moving the last pill of the list into its place, so the order of the list is arbitrary; the position of each
+ * pill in the list is tracked so that removals take constant time. The BitSet in Game remains the authoritative
+ * state: this list is derived from it and rebuilt (in the order of the pill indices) whenever it is replaced.
+ *
+ * restore() is the exact inverse of remove(): restoring pills in the reverse order of their removal gives back the
+ * very same list, so undoing a step also restores the order in which the pills are enumerated.
+ */
+public final class ActivePills
+{
+	private final int[] nodeIndices;		//node index of each pill of the maze (shared with the maze)
+	private final int[] pills;				//pill indices of the active pills, the first size entries are valid
+	private final int[] positions;			//position of each pill in pills (also kept for removed pills)
+	private int size;
+
+	public ActivePills(int[] nodeIndices)
+	{
+		this.nodeIndices=nodeIndices;
+
+		pills=new int[nodeIndices.length];
+		positions=new int[nodeIndices.length];
+	}
+
+	private ActivePills(ActivePills other)
+	{
+		nodeIndices=other.nodeIndices;
+		pills=other.pills.clone();
+		positions=other.positions.clone();
+		size=other.size;
+	}
+
+	/*
+	 * Rebuilds the list from the pills set in the BitSet specified.
+	 */
+	public void reset(BitSet active)
+	{
+		size=0;
+
+		for(int i=active.nextSetBit(0);i>=0 && i<nodeIndices.length;i=active.nextSetBit(i+1))
+		{
+			positions[i]=size;
+			pills[size++]=i;
+		}
+	}
+
+	/*
+	 * Whether this list holds pills with the node indices specified, i.e., belongs to that maze.
+	 */
+	public boolean belongsTo(int[] nodeIndices)
+	{
+		return this.nodeIndices==nodeIndices;
+	}
+
+	public ActivePills copy()
+	{
+		return new ActivePills(this);
+	}
+
+	/*
+	 * Copies this list into the one given and returns it, or returns a new copy if the two belong to different mazes.
+	 */
+	public ActivePills copyInto(ActivePills target)
+	{
+		if(target==null || !target.belongsTo(nodeIndices))
+			return copy();
+
+		System.arraycopy(pills,0,target.pills,0,size);
+		System.arraycopy(positions,0,target.positions,0,positions.length);
+		target.size=size;
+
+		return target;
+	}
+
+	/*
+	 * Removes the active pill with the pill index specified.
+	 */
+	public void remove(int pill)
+	{
+		int position=positions[pill];
+		int last=pills[--size];
+
+		pills[position]=last;
+		positions[last]=position;
+
+		pills[size]=pill;				//removed pills keep their position, see restore()
+		positions[pill]=position;
+	}
+
+	/*
+	 * Puts the pill last removed back into the position it had.
+	 */
+	public void restore(int pill)
+	{
+		int position=positions[pill];
+		int moved=pills[position];
+
+		pills[size]=moved;
+		positions[moved]=size++;
+
+		pills[position]=pill;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	/*
+	 * The node index of the i-th active pill (0<=i<size()).
+	 */
+	public int getNodeIndex(int i)
+	{
+		return nodeIndices[pills[i]];
+	}
+
+	/*
+	 * Passes the node index of each active pill to the action specified.
+	 */
+	public void forEach(IntConsumer action)
+	{
+		for(int i=0;i<size;i++)
+			action.accept(nodeIndices[pills[i]]);
+	}
+}
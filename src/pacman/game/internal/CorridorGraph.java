@@ -0,0 +1,251 @@
+package pacman.game.internal;
+
+import java.util.Arrays;
+
+import pacman.game.Constants.MOVE;
+
+import static pacman.game.internal.Maze.NUM_MOVES;
+
+/*
+ * The maze reduced to its junctions and the corridors between them. Between two junctions, a player can only move
+ * forward or reverse, so a search over junctions and corridors (a few dozen junctions) makes the same decisions as a
+ * search over all nodes (over a thousand) at a fraction of the cost.
+ *
+ * Junctions are numbered in the order of Maze.junctionIndices. A corridor connects two junctions (possibly the same
+ * one) and consists of the nodes strictly between them, listed from its start to its end; adjacent junctions are
+ * connected by a corridor without nodes. The length of a corridor is the number of steps from one end to the other.
+ * Every node that is neither a junction nor the lair belongs to exactly one corridor. The graph is immutable and
+ * shared by all games on the maze; the number of pills left in each corridor is part of the game state instead (see
+ * Game.getNumberOfActivePillsInCorridor()).
+ */
+public final class CorridorGraph
+{
+	private final int[] junctionNodes;				//node index of each junction
+	private final int[] junctionIds;				//junction id of each node, -1 if it is not a junction
+	private final int[] junctionCorridors;			//NUM_MOVES*junctionId+move: corridor left by that move, -1 if none
+	private final int[] start, end;					//junction node indices at the ends of each corridor
+	private final byte[] startMove, endMove;		//moves that leave the start (end) junction into the corridor
+	private final int[] nodeOffsets, nodes;			//nodes of corridor c are nodes[nodeOffsets[c]..nodeOffsets[c+1]-1]
+	private final int[] corridorOfNode, positionOfNode;
+	private final int[] pillCounts, powerPillCounts;	//number of pills (power pills) in each corridor at the start of a level
+
+	private static final MOVE[] MOVES=MOVE.values();
+
+	CorridorGraph(Maze maze)
+	{
+		int numNodes=maze.graph.length;
+
+		junctionNodes=maze.junctionIndices.clone();
+		junctionIds=new int[numNodes];
+		Arrays.fill(junctionIds,-1);
+
+		for(int i=0;i<junctionNodes.length;i++)
+			junctionIds[junctionNodes[i]]=i;
+
+		junctionCorridors=new int[NUM_MOVES*junctionNodes.length];
+		Arrays.fill(junctionCorridors,-1);
+
+		corridorOfNode=new int[numNodes];
+		positionOfNode=new int[numNodes];
+		Arrays.fill(corridorOfNode,-1);
+
+		//each corridor leaves at least one junction exit, so there are at most as many corridors as exits
+		int maxCorridors=0;
+
+		for(int i=0;i<junctionNodes.length;i++)
+			maxCorridors+=maze.graph[junctionNodes[i]].numNeighbouringNodes;
+
+		int[] starts=new int[maxCorridors], ends=new int[maxCorridors], offsets=new int[maxCorridors+1];
+		byte[] startMoves=new byte[maxCorridors], endMoves=new byte[maxCorridors];
+		int[] corridorNodes=new int[numNodes];
+		int numCorridors=0, numCorridorNodes=0;
+
+		for(int j=0;j<junctionNodes.length;j++)
+		{
+			for(int move=0;move<NUM_MOVES;move++)
+			{
+				int node=maze.neighbours[NUM_MOVES*junctionNodes[j]+move];
+
+				if(node==-1 || junctionCorridors[NUM_MOVES*j+move]!=-1)
+					continue;
+
+				int c=numCorridors++;
+				int lastMove=move;
+
+				starts[c]=junctionNodes[j];
+				startMoves[c]=(byte)move;
+				junctionCorridors[NUM_MOVES*j+move]=c;
+
+				//follow the corridor: there is only one way forward until the next junction
+				while(junctionIds[node]==-1)
+				{
+					corridorOfNode[node]=c;
+					positionOfNode[node]=numCorridorNodes-offsets[c];
+					corridorNodes[numCorridorNodes++]=node;
+
+					for(int next=0;next<NUM_MOVES;next++)
+						if(next!=Maze.opposite[lastMove] && maze.neighbours[NUM_MOVES*node+next]!=-1)
+						{
+							lastMove=next;
+							break;
+						}
+
+					node=maze.neighbours[NUM_MOVES*node+lastMove];
+				}
+
+				ends[c]=node;
+				endMoves[c]=(byte)Maze.opposite[lastMove];
+				junctionCorridors[NUM_MOVES*junctionIds[node]+Maze.opposite[lastMove]]=c;
+				offsets[c+1]=numCorridorNodes;
+			}
+		}
+
+		start=Arrays.copyOf(starts,numCorridors);
+		end=Arrays.copyOf(ends,numCorridors);
+		startMove=Arrays.copyOf(startMoves,numCorridors);
+		endMove=Arrays.copyOf(endMoves,numCorridors);
+		nodeOffsets=Arrays.copyOf(offsets,numCorridors+1);
+		nodes=Arrays.copyOf(corridorNodes,numCorridorNodes);
+
+		pillCounts=new int[numCorridors];
+		powerPillCounts=new int[numCorridors];
+
+		for(int i=0;i<nodes.length;i++)
+		{
+			Node node=maze.graph[nodes[i]];
+
+			if(node.pillIndex>=0)
+				pillCounts[corridorOfNode[nodes[i]]]++;
+			else if(node.powerPillIndex>=0)
+				powerPillCounts[corridorOfNode[nodes[i]]]++;
+		}
+	}
+
+	/////// junctions //////////
+
+	public int getNumberOfJunctions()
+	{
+		return junctionNodes.length;
+	}
+
+	/*
+	 * The node index of the junction with the id specified.
+	 */
+	public int getJunctionNodeIndex(int junctionId)
+	{
+		return junctionNodes[junctionId];
+	}
+
+	/*
+	 * The id of the junction at the node specified, -1 if the node is not a junction.
+	 */
+	public int getJunctionId(int nodeIndex)
+	{
+		return junctionIds[nodeIndex];
+	}
+
+	/*
+	 * The corridor entered by leaving the junction at the node specified with the move specified, -1 if there is none.
+	 */
+	public int getCorridor(int junctionNodeIndex,MOVE move)
+	{
+		return junctionCorridors[NUM_MOVES*junctionIds[junctionNodeIndex]+move.ordinal()];
+	}
+
+	/////// corridors //////////
+
+	public int getNumberOfCorridors()
+	{
+		return start.length;
+	}
+
+	/*
+	 * The corridor the node belongs to, -1 for junctions and the lair.
+	 */
+	public int getCorridorOfNode(int nodeIndex)
+	{
+		return corridorOfNode[nodeIndex];
+	}
+
+	/*
+	 * The position of a corridor node along its corridor, counting from 0 at the start.
+	 */
+	public int getPositionInCorridor(int nodeIndex)
+	{
+		return positionOfNode[nodeIndex];
+	}
+
+	public int getStartJunction(int corridor)
+	{
+		return start[corridor];
+	}
+
+	public int getEndJunction(int corridor)
+	{
+		return end[corridor];
+	}
+
+	/*
+	 * The move that leaves the start junction into the corridor.
+	 */
+	public MOVE getStartMove(int corridor)
+	{
+		return MOVES[startMove[corridor]];
+	}
+
+	/*
+	 * The move that leaves the end junction into the corridor.
+	 */
+	public MOVE getEndMove(int corridor)
+	{
+		return MOVES[endMove[corridor]];
+	}
+
+	/*
+	 * The number of steps from one end of the corridor to the other.
+	 */
+	public int getLength(int corridor)
+	{
+		return nodeOffsets[corridor+1]-nodeOffsets[corridor]+1;
+	}
+
+	/*
+	 * The number of nodes strictly between the two junctions.
+	 */
+	public int getNumberOfNodes(int corridor)
+	{
+		return nodeOffsets[corridor+1]-nodeOffsets[corridor];
+	}
+
+	/*
+	 * The node at the given position of the corridor (0 is next to the start junction).
+	 */
+	public int getNode(int corridor,int position)
+	{
+		return nodes[nodeOffsets[corridor]+position];
+	}
+
+	/*
+	 * The junction at the other end of the corridor when coming from the junction specified.
+	 */
+	public int getOtherEnd(int corridor,int junctionNodeIndex)
+	{
+		return start[corridor]==junctionNodeIndex ? end[corridor] : start[corridor];
+	}
+
+	/*
+	 * The number of pills in the corridor at the start of a level.
+	 */
+	public int getNumberOfPills(int corridor)
+	{
+		return pillCounts[corridor];
+	}
+
+	/*
+	 * The number of power pills in the corridor at the start of a level.
+	 */
+	public int getNumberOfPowerPills(int corridor)
+	{
+		return powerPillCounts[corridor];
+	}
+}
@@ -0,0 +1,164 @@
+package pacman.game.internal;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import pacman.game.Constants.MOVE;
+
+/*
+ * Distances and first moves of the paths that may not reverse, i.e., the paths the ghosts take, as returned by
+ * PathsCache.getPathFromA2B(a,b,lastMoveMade). Such a path first follows the corridor ahead up to the next junction
+ * (unless the target lies on the way) and then continues along the shortest path from that junction that does not
+ * reverse the move with which the junction was entered. The second part only depends on the junction, that move and
+ * the target, so it is tabulated for all of them: numJunctions*NUM_MOVES*numNodes entries, each packing the first
+ * move (upper 3 bits) and the distance (lower 13 bits) into a char. To tell whether the target lies on the way to the
+ * junction, the corridors (chains of nodes between junctions) are numbered and their nodes given consecutive positions.
+ * All queries thus take constant time and allocate nothing.
+ */
+final class DirectedPaths
+{
+	private static final int DISTANCE_BITS=13;
+	private static final int DISTANCE_MASK=(1<<DISTANCE_BITS)-1;
+	private static final MOVE[] MOVES=MOVE.values();
+
+	private final DNode[] nodes;
+	private final int numNodes;
+	private final int[] junctionIds;				//the junction id of each node, -1 if it is not a junction
+	private final int[] corridor, position;			//corridor of each node that is not a junction and its position along it
+	private final char[] table;						//indexed by (junctionId*NUM_MOVES+moveEntered)*numNodes+target
+
+	DirectedPaths(PathsCache cache)
+	{
+		nodes=cache.nodes;
+		numNodes=nodes.length;
+
+		Maze m=cache.game.getCurrentMaze();
+		int[] indices=m.junctionIndices;
+
+		junctionIds=new int[numNodes];
+		Arrays.fill(junctionIds,-1);
+
+		for(int i=0;i<indices.length;i++)
+			junctionIds[indices[i]]=i;
+
+		corridor=new int[numNodes];
+		position=new int[numNodes];
+		numberCorridors();
+
+		table=new char[indices.length*Maze.NUM_MOVES*numNodes];
+
+		IntStream.range(0,indices.length).parallel().forEach(q -> fillTable(cache,indices[q],q));
+	}
+
+	/*
+	 * The length of getPathFromA2B(a,b,lastMoveMade).
+	 */
+	int getDistance(int a,int b,MOVE lastMoveMade)
+	{
+		if(a==b)
+			return 0;
+
+		JunctionData from=nodes[a].getNearestJunction(lastMoveMade);
+		int ahead=distanceAhead(a,from,b);
+
+		if(ahead>0)
+			return ahead;
+
+		MOVE entered=from.lastMove==MOVE.NEUTRAL ? lastMoveMade : from.lastMove;
+
+		return from.path.length+(table[index(from.nodeID,entered,b)] & DISTANCE_MASK);
+	}
+
+	/*
+	 * The first move of getPathFromA2B(a,b,lastMoveMade); MOVE.NEUTRAL if a==b.
+	 */
+	MOVE getNextMove(int a,int b,MOVE lastMoveMade)
+	{
+		if(a==b)
+			return MOVE.NEUTRAL;
+
+		JunctionData from=nodes[a].getNearestJunction(lastMoveMade);
+
+		if(from.path.length>0)
+			return from.firstMove;
+
+		return MOVES[table[index(a,lastMoveMade,b)]>>>DISTANCE_BITS];
+	}
+
+	//The distance to b if it lies on the way from a to the junction, 0 otherwise.
+	private int distanceAhead(int a,JunctionData from,int b)
+	{
+		if(b==from.nodeID)
+			return from.path.length;
+
+		if(junctionIds[a]!=-1 || junctionIds[b]!=-1 || corridor[b]!=corridor[a] || from.path.length<2)
+			return 0;
+
+		int step=position[from.path[0]]-position[a];
+		int distance=(position[b]-position[a])*step;
+
+		return distance>0 ? distance : 0;
+	}
+
+	private int index(int junction,MOVE moveEntered,int target)
+	{
+		return (junctionIds[junction]*Maze.NUM_MOVES+moveEntered.ordinal())*numNodes+target;
+	}
+
+	//Lists the nodes of each corridor in order: the path towards one junction reversed, the node, then the path towards the other.
+	private void numberCorridors()
+	{
+		Arrays.fill(corridor,-1);
+
+		int numCorridors=0;
+
+		for(int i=0;i<numNodes;i++)
+		{
+			if(junctionIds[i]!=-1 || corridor[i]!=-1 || nodes[i].closestJunctions.size()<2)
+				continue;
+
+			int[] back=nodes[i].closestJunctions.get(1).path;
+			int[] ahead=nodes[i].closestJunctions.get(0).path;
+			int pos=0;
+
+			for(int k=back.length-2;k>=0;k--)
+				assign(back[k],numCorridors,pos++);
+
+			assign(i,numCorridors,pos++);
+
+			for(int k=0;k<ahead.length-1;k++)
+				assign(ahead[k],numCorridors,pos++);
+
+			numCorridors++;
+		}
+	}
+
+	private void assign(int node,int id,int pos)
+	{
+		corridor[node]=id;
+		position[node]=pos;
+	}
+
+	//Fills the entries of a single junction (only called once per junction, so the paths are simply computed).
+	private void fillTable(PathsCache cache,int junction,int junctionId)
+	{
+		for(int move=0;move<Maze.NUM_MOVES;move++)
+		{
+			int offset=(junctionId*Maze.NUM_MOVES+move)*numNodes;
+
+			for(int target=0;target<numNodes;target++)
+			{
+				if(target==junction || nodes[target].closestJunctions.isEmpty())
+					continue;
+
+				int[] path=cache.getPathFromA2B(junction,target,MOVES[move]);
+
+				if(path.length>DISTANCE_MASK)
+					throw new IllegalStateException("Path too long: "+path.length);
+
+				MOVE first=cache.game.getMoveToMakeToReachDirectNeighbour(junction,path[0]);
+				table[offset+target]=(char)((first.ordinal()<<DISTANCE_BITS)|path.length);
+			}
+		}
+	}
+}
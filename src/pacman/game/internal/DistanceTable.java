@@ -0,0 +1,327 @@
+package pacman.game.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static pacman.game.Constants.*;
+
+/*
+ * The pre-computed shortest path distances of a maze. Since the graph is symmetric, only the lower triangle of the
+ * distance matrix is stored, as a 1D array: the distance between nodes a<=b is found at index b*(b+1)/2+a.
+ *
+ * The distances are distributed as text files with one number per line, which are slow to parse. The first time a
+ * maze is loaded, its text file is converted into a compact binary file next to it (same name, extension '.bin').
+ * The binary file is then memory-mapped and the distances are read straight from the mapping, so start-up does not
+ * depend on the size of the table and JVMs running at the same time share the same pages. If the binary file cannot
+ * be written, the text file is parsed into memory as before.
+ *
+ * Distances are stored using the narrowest unsigned width that holds the longest path of the maze: one byte for
+ * the built-in mazes (no path is longer than 254 steps), two bytes for mazes with paths up to 65534 steps and four
+ * bytes otherwise. The largest value of the narrow widths (0xFF or 0xFFFF) is reserved for the distance -1, which
+ * the files use for pairs of nodes that are not connected (e.g., to and from the lair); any other negative value
+ * requires four bytes. This quarters the memory needed compared to an int per entry and keeps more of the table in
+ * the cache. The width is chosen when the table is written; the subclasses below decode it.
+ *
+ * Binary format (little-endian): magic number, format version, number of nodes, bytes per entry (all ints),
+ * followed by the entries.
+ */
+public abstract class DistanceTable
+{
+	private static final int MAGIC=0x54444d50;			//"PMDT"
+	private static final int VERSION=3;
+	private static final int HEADER_SIZE=16;
+
+	protected final ByteBuffer entries;
+	private final int numNodes;
+
+	private DistanceTable(ByteBuffer entries,int numNodes)
+	{
+		this.entries=entries;
+		this.numNodes=numNodes;
+	}
+
+	/*
+	 * Returns the shortest path distance between the two nodes specified.
+	 */
+	public final int get(int fromNodeIndex,int toNodeIndex)
+	{
+		if(fromNodeIndex==toNodeIndex)
+			return 0;
+		else if(fromNodeIndex<toNodeIndex)
+			return entry(((toNodeIndex*(toNodeIndex+1))/2)+fromNodeIndex);
+		else
+			return entry(((fromNodeIndex*(fromNodeIndex+1))/2)+toNodeIndex);
+	}
+
+	/*
+	 * Returns the entry at the given index of the triangular table.
+	 */
+	protected abstract int entry(int index);
+
+	/*
+	 * The number of bytes used per entry.
+	 */
+	public abstract int getEntrySize();
+
+	/*
+	 * The number of nodes of the maze the table belongs to.
+	 */
+	public int getNumberOfNodes()
+	{
+		return numNodes;
+	}
+
+	/*
+	 * Loads the distances of the maze with the given number of nodes, converting the text file to the binary format
+	 * first if there is no up-to-date binary file yet.
+	 */
+	public static DistanceTable load(String fileName,int numNodes)
+	{
+		File text=new File(pathDistances,fileName);
+		File binary=new File(pathDistances,fileName+".bin");
+
+		try
+		{
+			if(binary.exists() && binary.lastModified()>=text.lastModified())
+				return map(binary,numNodes);
+		}
+		catch(IOException ioe)
+		{
+			//written by an older version or corrupt: convert again
+		}
+
+		try
+		{
+			convert(text,binary,numNodes);
+
+			return map(binary,numNodes);
+		}
+		catch(IOException ioe)
+		{
+			//read-only installation: fall back to the text file
+			try
+			{
+				return create(encode(parse(text,numNodes),0),numNodes);
+			}
+			catch(IOException e)
+			{
+				e.printStackTrace();
+				return create(ByteBuffer.allocate(numEntries(numNodes)),numNodes);
+			}
+		}
+	}
+
+	/*
+	 * Converts a text file of distances into the binary format. The file is written under a temporary name first and
+	 * then moved into place so that other processes never map a partially written file.
+	 */
+	public static void convert(File text,File binary,int numNodes) throws IOException
+	{
+		ByteBuffer buffer=encode(parse(text,numNodes),HEADER_SIZE);
+
+		buffer.putInt(0,MAGIC);
+		buffer.putInt(4,VERSION);
+		buffer.putInt(8,numNodes);
+		buffer.putInt(12,(buffer.capacity()-HEADER_SIZE)/numEntries(numNodes));
+		buffer.position(0);
+
+		File tmp=File.createTempFile(binary.getName(),".tmp",binary.getAbsoluteFile().getParentFile());
+
+		try
+		{
+			try(FileChannel channel=FileChannel.open(tmp.toPath(),StandardOpenOption.WRITE))
+			{
+				while(buffer.hasRemaining())
+					channel.write(buffer);
+			}
+
+			Files.move(tmp.toPath(),binary.toPath(),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			tmp.delete();
+		}
+	}
+
+	//Maps a binary file into memory and checks that it matches the maze.
+	private static DistanceTable map(File binary,int numNodes) throws IOException
+	{
+		try(FileChannel channel=FileChannel.open(binary.toPath(),StandardOpenOption.READ))
+		{
+			if(channel.size()<HEADER_SIZE)
+				throw new IOException("Unexpected size of "+binary);
+
+			ByteBuffer buffer=channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+			int entrySize=buffer.getInt(12);
+
+			if(buffer.getInt(0)!=MAGIC || buffer.getInt(4)!=VERSION || buffer.getInt(8)!=numNodes)
+				throw new IOException("Unexpected header in "+binary);
+
+			if(channel.size()!=HEADER_SIZE+(long)entrySize*numEntries(numNodes))
+				throw new IOException("Unexpected size of "+binary);
+
+			buffer.position(HEADER_SIZE);
+
+			return create(buffer.slice().order(ByteOrder.LITTLE_ENDIAN),numNodes);
+		}
+	}
+
+	//Creates the table that decodes entries of the width found in the buffer.
+	private static DistanceTable create(ByteBuffer entries,int numNodes)
+	{
+		switch(entries.capacity()/numEntries(numNodes))
+		{
+			case 1: return new ByteDistances(entries,numNodes);
+			case 2: return new CharDistances(entries,numNodes);
+			default: return new IntDistances(entries,numNodes);
+		}
+	}
+
+	//Parses the text file.
+	private static int[] parse(File text,int numNodes) throws IOException
+	{
+		int[] distances=new int[numEntries(numNodes)];
+		int index=0;
+
+		try(BufferedReader br=new BufferedReader(new InputStreamReader(new FileInputStream(text))))
+		{
+			String input=br.readLine();
+
+			while(input!=null && index<distances.length)
+			{
+				distances[index++]=Integer.parseInt(input);
+				input=br.readLine();
+			}
+		}
+
+		if(index<distances.length)
+			throw new IOException(text+" does not contain enough distances");
+
+		return distances;
+	}
+
+	//Writes the distances into a buffer using the narrowest width possible, leaving the given number of bytes free at the start.
+	private static ByteBuffer encode(int[] distances,int offset)
+	{
+		int min=0,max=0;
+
+		for(int i=0;i<distances.length;i++)
+		{
+			min=Math.min(min,distances[i]);
+			max=Math.max(max,distances[i]);
+		}
+
+		int entrySize=min<-1 ? 4 : max<0xFF ? 1 : max<0xFFFF ? 2 : 4;
+
+		ByteBuffer buffer=ByteBuffer.allocate(offset+entrySize*distances.length).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(offset);
+
+		for(int i=0;i<distances.length;i++)
+		{
+			switch(entrySize)
+			{
+				case 1: buffer.put((byte)distances[i]); break;
+				case 2: buffer.putChar((char)distances[i]); break;
+				default: buffer.putInt(distances[i]);
+			}
+		}
+
+		buffer.position(0);
+
+		return buffer;
+	}
+
+	private static int numEntries(int numNodes)
+	{
+		return ((numNodes*(numNodes-1))/2)+numNodes;
+	}
+
+	/*
+	 * Converts the distance files of all mazes into the binary format. The conversion also happens automatically
+	 * whenever a maze is loaded without an up-to-date binary file.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		for(int i=0;i<NUM_MAZES;i++)
+		{
+			int numNodes;
+
+			try(BufferedReader br=new BufferedReader(new InputStreamReader(new FileInputStream(pathMazes+System.getProperty("file.separator")+nodeNames[i]+".txt"))))
+			{
+				numNodes=Integer.parseInt(br.readLine().split("\t")[4]);
+			}
+
+			File text=new File(pathDistances,distNames[i]);
+
+			convert(text,new File(pathDistances,distNames[i]+".bin"),numNodes);
+			System.out.println("Converted "+text);
+		}
+	}
+
+	private static final class ByteDistances extends DistanceTable
+	{
+		ByteDistances(ByteBuffer entries,int numNodes)
+		{
+			super(entries,numNodes);
+		}
+
+		protected int entry(int index)
+		{
+			int entry=entries.get(index) & 0xFF;
+
+			return entry==0xFF ? -1 : entry;
+		}
+
+		public int getEntrySize()
+		{
+			return 1;
+		}
+	}
+
+	private static final class CharDistances extends DistanceTable
+	{
+		CharDistances(ByteBuffer entries,int numNodes)
+		{
+			super(entries,numNodes);
+		}
+
+		protected int entry(int index)
+		{
+			int entry=entries.getChar(2*index);
+
+			return entry==0xFFFF ? -1 : entry;
+		}
+
+		public int getEntrySize()
+		{
+			return 2;
+		}
+	}
+
+	private static final class IntDistances extends DistanceTable
+	{
+		IntDistances(ByteBuffer entries,int numNodes)
+		{
+			super(entries,numNodes);
+		}
+
+		protected int entry(int index)
+		{
+			return entries.getInt(4*index);
+		}
+
+		public int getEntrySize()
+		{
+			return 4;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package pacman.game.internal;
+
+import java.util.Random;
+
+/*
+ * The pseudo-random number generator of a game. It is the linear congruential generator of java.util.Random, so a
+ * game seeded with the same value draws exactly the same numbers as before, but its state can be copied: a copy of a
+ * game continues the stream of random events from where the original is, instead of restarting it from the seed.
+ *
+ * Unlike java.util.Random, the generator is not thread-safe; like the rest of a game, it is used by one thread only.
+ */
+public final class GameRandom extends Random
+{
+	private static final long serialVersionUID=1L;
+
+	private static final long MULTIPLIER=0x5DEECE66DL;
+	private static final long ADDEND=0xBL;
+	private static final long MASK=(1L<<48)-1;
+
+	private long state;		//set by setSeed(), which the constructor of Random calls for subclasses
+
+	public GameRandom(long seed)
+	{
+		super(seed);
+	}
+
+	public void setSeed(long seed)
+	{
+		super.setSeed(seed);
+		state=(seed^MULTIPLIER)&MASK;
+	}
+
+	/*
+	 * Continues the stream of the generator given: both generators draw the same numbers from now on.
+	 */
+	public void copyFrom(GameRandom other)
+	{
+		state=other.state;
+	}
+
+	/*
+	 * The state of the generator (48 bits), e.g. to be restored later using setState().
+	 */
+	public long getState()
+	{
+		return state;
+	}
+
+	/*
+	 * Rewinds (or advances) the generator to a state returned by getState().
+	 */
+	public void setState(long state)
+	{
+		this.state=state&MASK;
+	}
+
+	/*
+	 * Returns a seed for a new stream that depends on the position in this stream, without advancing it. Forking
+	 * twice at the same position yields the same seed.
+	 */
+	public long fork()
+	{
+		long z=state+0x9E3779B97F4A7C15L;		//the finaliser of SplitMix64
+
+		z=(z^(z>>>30))*0xBF58476D1CE4E5B9L;
+		z=(z^(z>>>27))*0x94D049BB133111EBL;
+
+		return z^(z>>>31);
+	}
+
+	protected int next(int bits)
+	{
+		state=(state*MULTIPLIER+ADDEND)&MASK;
+
+		return (int)(state>>>(48-bits));
+	}
+}
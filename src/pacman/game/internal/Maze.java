@@ -4,8 +4,7 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-//import java.util.EnumMap;
-//import pacman.game.Constants.MOVE;
+import pacman.game.Constants.MOVE;
 
 import static pacman.game.Constants.*;
 
@@ -18,11 +17,35 @@ import static pacman.game.Constants.*;
 public final class Maze
 {
 	public AStar astar;
-	public int[] shortestPathDistances,pillIndices,powerPillIndices,junctionIndices;	//Information for the controllers
+	public int[] pillIndices,powerPillIndices,junctionIndices;							//Information for the controllers
+	public DistanceTable shortestPathDistances;											//Pre-computed shortest path distances
 	public int initialPacManNodeIndex,lairNodeIndex,initialGhostNodeIndex;				//Maze-specific information
 	public Node[] graph;																//The actual maze, stored as a graph (set of nodes)
 	public String name;																	//Name of the Maze
 	
+	/*
+	 * Flattened versions of the neighbourhoods stored in each node, used by the game engine to avoid boxing and
+	 * EnumMap look-ups. All tables are indexed by NUM_MOVES*nodeIndex+move.ordinal(). The column of MOVE.NEUTRAL
+	 * in 'neighbours' is always -1 so that no special case is needed for standing still. The entries of
+	 * 'possibleMoves' and 'neighbouringNodes' are the arrays also held by Node.allPossibleMoves and
+	 * Node.allNeighbouringNodes (null where the node defines none).
+	 */
+	public static final int NUM_MOVES=MOVE.values().length;
+	public static final int[] opposite=new int[NUM_MOVES];								//opposite[move.ordinal()] is the ordinal of move.opposite()
+	public int[] neighbours;
+	public MOVE[][] possibleMoves;
+	public int[][] neighbouringNodes;
+	
+	private final NextMoveTable nextMoves;												//Moves along the shortest paths, see getNextMoves()
+	private final TargetsByDistance pillsByDistance,powerPillsByDistance;				//Pills sorted by distance, see getPillsByDistance()
+	private CorridorGraph corridorGraph;												//Junctions and the corridors between them
+	
+	static
+	{
+		for(MOVE move : MOVE.values())
+			opposite[move.ordinal()]=move.opposite().ordinal();
+	}
+	
 	/*
 	 * Each maze is stored as a (connected) graph: all nodes have neighbours, stored in an array of length 4. The
 	 * index of the array associates the direction the neighbour is located at: '[up,right,down,left]'.
@@ -33,7 +56,12 @@ public final class Maze
 	public Maze(int index)
 	{
 		loadNodes(nodeNames[index]);
-		loadDistances(distNames[index]);
+		shortestPathDistances=DistanceTable.load(distNames[index],graph.length);
+		createMoveTables();
+		corridorGraph=new CorridorGraph(this);
+		nextMoves=new NextMoveTable(this);
+		pillsByDistance=new TargetsByDistance(this,pillIndices);
+		powerPillsByDistance=new TargetsByDistance(this,powerPillIndices);
 		
 		//create A* graph for shortest paths for the ghosts
 		astar=new AStar();
@@ -94,30 +122,57 @@ public final class Maze
 	}
 	
 	/*
-	 * Loads the shortest path distances which have been pre-computed. The data contains the shortest distance from
-	 * any node in the maze to any other node. Since the graph is symmetric, the symmetries have been removed to preserve
-	 * memory and all distances are stored in a 1D array; they are looked-up using getDistance(-). 
+	 * Returns the junctions of the maze and the corridors between them.
+	 */
+	public CorridorGraph getCorridorGraph()
+	{
+		return corridorGraph;
+	}
+	
+	/*
+	 * Returns the next moves towards and away from all targets along the shortest paths. The table is built with the
+	 * maze: building it takes longer than a time step, so it must not be left to the first query during a game.
+	 */
+	public NextMoveTable getNextMoves()
+	{
+		return nextMoves;
+	}
+	
+	/*
+	 * Returns the pills of the maze sorted by their distance from each node. Built with the maze (see getNextMoves()).
 	 */
-	private void loadDistances(String fileName)
+	public TargetsByDistance getPillsByDistance()
 	{
-		this.shortestPathDistances=new int[((graph.length*(graph.length-1))/2)+graph.length];
+		return pillsByDistance;
+	}
+	
+	/*
+	 * Returns the power pills of the maze sorted by their distance from each node. Built with the maze.
+	 */
+	public TargetsByDistance getPowerPillsByDistance()
+	{
+		return powerPillsByDistance;
+	}
+	
+	//Flattens the neighbourhoods of all nodes into the tables used by the game engine.
+	private void createMoveTables()
+	{
+		MOVE[] moves=MOVE.values();
 		
-        try
-        {
-        	BufferedReader br=new BufferedReader(new InputStreamReader(new FileInputStream(pathDistances+System.getProperty("file.separator")+fileName)));
-            String input=br.readLine();
-            
-            int index=0;
-            
-            while(input!=null)
-            {	
-            	shortestPathDistances[index++]=Integer.parseInt(input);
-                input=br.readLine();
-            }
-        }
-        catch(IOException ioe)
-        {
-            ioe.printStackTrace();
-        }
+		neighbours=new int[NUM_MOVES*graph.length];
+		possibleMoves=new MOVE[NUM_MOVES*graph.length][];
+		neighbouringNodes=new int[NUM_MOVES*graph.length][];
+		
+		for(int i=0;i<graph.length;i++)
+		{
+			for(int j=0;j<moves.length;j++)
+			{
+				Integer neighbour=graph[i].neighbourhood.get(moves[j]);
+				
+				neighbours[NUM_MOVES*i+j]=neighbour==null ? -1 : neighbour;
+				possibleMoves[NUM_MOVES*i+j]=graph[i].allPossibleMoves.get(moves[j]);
+				neighbouringNodes[NUM_MOVES*i+j]=graph[i].allNeighbouringNodes.get(moves[j]);
+			}
+		}
 	}
 }
\ No newline at end of file
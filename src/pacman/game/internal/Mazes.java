@@ -0,0 +1,102 @@
+package pacman.game.internal;
+
+import java.util.stream.IntStream;
+
+import static pacman.game.Constants.NUM_MAZES;
+
+/*
+ * Holds the mazes and their path caches. Both never change once built, but building them is costly (loading the
+ * maze and distance files, running A* between all pairs of junctions), so each is only built the first time it is
+ * needed. Runs that only ever play one maze, e.g. new Game(seed,initialMaze) in a short test, therefore never pay for
+ * the others. Initialisation is thread-safe: games running in parallel that need the same maze wait for a single
+ * thread to build it. Runs that will visit every maze can build them all up-front, in parallel, using precomputeAll().
+ */
+public final class Mazes
+{
+	private static final Slot[] slots=new Slot[NUM_MAZES];
+
+	static
+	{
+		for(int i=0;i<slots.length;i++)
+			slots[i]=new Slot(i);
+	}
+
+	private Mazes(){}
+
+	/*
+	 * Returns the maze with the index specified, loading it if necessary.
+	 */
+	public static Maze getMaze(int mazeIndex)
+	{
+		return slots[mazeIndex].getMaze();
+	}
+
+	/*
+	 * Returns the paths cache of the maze with the index specified, computing it if necessary.
+	 */
+	public static PathsCache getPathsCache(int mazeIndex)
+	{
+		return slots[mazeIndex].getPathsCache();
+	}
+
+	/*
+	 * Builds all mazes and their paths caches, including the tables derived from them, that have not been built yet.
+	 * The mazes are built concurrently on the common fork/join pool, which the paths caches also use to spread their
+	 * own work over the junctions.
+	 */
+	public static void precomputeAll()
+	{
+		IntStream.range(0,slots.length).parallel().forEach(i -> slots[i].getPathsCache());
+	}
+
+	//Lazily initialised data of a single maze (double-checked locking on volatile fields).
+	private static final class Slot
+	{
+		private final int index;
+		private final Object cacheLock=new Object();
+		private volatile Maze maze;
+		private volatile PathsCache cache;
+
+		Slot(int index)
+		{
+			this.index=index;
+		}
+
+		Maze getMaze()
+		{
+			Maze result=maze;
+
+			if(result==null)
+			{
+				synchronized(this)
+				{
+					result=maze;
+
+					if(result==null)
+						maze=result=new Maze(index);
+				}
+			}
+
+			return result;
+		}
+
+		//the cache has its own lock as building it creates a game, which in turn needs the maze
+		PathsCache getPathsCache()
+		{
+			PathsCache result=cache;
+
+			if(result==null)
+			{
+				synchronized(cacheLock)
+				{
+					result=cache;
+
+					if(result==null)
+						cache=result=new PathsCache(index);
+				}
+			}
+
+			return result;
+		}
+	}
+}
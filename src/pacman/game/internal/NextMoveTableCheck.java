@@ -0,0 +1,82 @@
+package pacman.game.internal;
+
+import pacman.game.Constants.MOVE;
+import pacman.game.Game;
+
+import static pacman.game.Constants.NUM_MAZES;
+import static pacman.game.internal.Maze.NUM_MOVES;
+
+/*
+ * Checks the tables of NextMoveTable against the loops they replace in Game.getNextMoveTowardsTarget() and
+ * Game.getNextMoveAwayFromTarget() for DM.PATH: for every maze and every pair of nodes (the source having neighbours),
+ * the neighbour closest to (furthest from) the target is found with the shortest path distances, the first one in the
+ * order of MOVE winning ties, and compared to the move looked up. Run it after any change to the tables or to the rule
+ * for breaking ties; it reports the number of mismatches per maze and exits with status 1 if there are any.
+ *
+ * Usage: java pacman.game.internal.NextMoveTableCheck
+ */
+public final class NextMoveTableCheck
+{
+	private static final MOVE[] MOVES=MOVE.values();
+
+	public static void main(String[] args)
+	{
+		long totalMismatches=0;
+
+		for(int i=0;i<NUM_MAZES;i++)
+		{
+			Game game=new Game(0,i);
+			Maze maze=game.getCurrentMaze();
+			NextMoveTable table=maze.getNextMoves();
+			long pairs=0,mismatches=0;
+
+			for(int from=0;from<maze.graph.length;from++)
+			{
+				if(maze.graph[from].numNeighbouringNodes==0)
+					continue;
+
+				for(int to=0;to<maze.graph.length;to++)
+				{
+					pairs++;
+
+					if(table.getMoveTowards(from,to)!=nextMove(maze,game,from,to,true))
+						mismatches++;
+
+					if(table.getMoveAwayFrom(from,to)!=nextMove(maze,game,from,to,false))
+						mismatches++;
+				}
+			}
+
+			System.out.println("maze "+i+": "+pairs+" pairs, "+mismatches+" mismatches");
+			totalMismatches+=mismatches;
+		}
+
+		if(totalMismatches>0)
+			System.exit(1);
+	}
+
+	//The loop of Game.getNextMoveTowardsTarget() (towards) or Game.getNextMoveAwayFromTarget() for DM.PATH.
+	private static MOVE nextMove(Maze maze,Game game,int from,int to,boolean towards)
+	{
+		MOVE move=null;
+		double best=towards ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+
+		for(int i=0;i<NUM_MOVES;i++)
+		{
+			int neighbour=maze.neighbours[NUM_MOVES*from+i];
+
+			if(neighbour!=-1)
+			{
+				double distance=game.getShortestPathDistance(neighbour,to);
+
+				if(towards ? distance<best : distance>best)
+				{
+					best=distance;
+					move=MOVES[i];
+				}
+			}
+		}
+
+		return move;
+	}
+}
@@ -1,13 +1,27 @@
 package pacman.game.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+import java.util.stream.IntStream;
 import pacman.game.Constants.MOVE;
 import pacman.game.Game;
 
+import static pacman.game.Constants.*;
+
 /*
  * Pre-computes paths for more efficient execution of the game. It is a tradeoff between loading times, execution speed,
  * and file sizes. It works as follows: the paths from any junction to any other junction are computed for all directions
@@ -28,6 +42,11 @@ public class PathsCache
 	public DNode[] nodes;
 	public Junction[] junctions;
 	public Game game;
+	
+	private int[] junctionIds;//same as junctionIndexConverter, without boxing: -1 for nodes that are not junctions
+	private final DirectedPaths directedPaths;//built with the cache, so no game step pays for it
+	
+	private static final MOVE[] MOVES = MOVE.values();
 		
  	public PathsCache(int mazeIndex)
 	{
@@ -38,14 +57,29 @@ public class PathsCache
 		
 		int[] jctIndices = m.junctionIndices;
 		
+		junctionIds = new int[m.graph.length];
+		Arrays.fill(junctionIds, -1);
+		
 		for (int i = 0; i < jctIndices.length; i++)
+		{
 			junctionIndexConverter.put(jctIndices[i], i);
+			junctionIds[jctIndices[i]] = i;
+		}
 
-		nodes = assignJunctionsToNodes(game);
-		junctions = junctionDistances(game);
+		File file = new File(pathMazes, nodeNames[mazeIndex] + ".paths");
+		long key = (long) ALGORITHM_VERSION << 32 | checksum(new File(pathMazes, nodeNames[mazeIndex] + ".txt"));
+		
+		if (!read(file, key, m)) 
+		{
+			nodes = assignJunctionsToNodes(game);
+			junctions = junctionDistances(game);
+			write(file, key);
+		}
 		
 		for(int i=0;i<junctions.length;i++)
 			junctions[i].computeShortestPaths();
+		
+		directedPaths = new DirectedPaths(this);
 	}
 
 	//for Ms Pac-Man
@@ -98,12 +132,160 @@ public class PathsCache
 		return concat(closestFromJunctions.get(minFrom).path, shortestPath, closestToJunctions.get(minTo).reversePath);
 	}
 	
+	/*
+	 * Visits the nodes of getPathFromA2B(a, b) in order without creating the path: the cached segments (to the junction
+	 * near the source, between the junctions, from the junction near the target) are walked in place. The visit stops as
+	 * soon as the visitor returns false. Returns true if all nodes of the path were visited.
+	 */
+	public boolean forEachNodeOnPath(int a, int b, IntPredicate visitor)
+	{
+		if (a == b)
+			return true;
+		
+		ArrayList<JunctionData> closestFromJunctions = nodes[a].closestJunctions;
+		
+		//if target is on the way to junction, then we are done
+		for (int w = 0; w < closestFromJunctions.size(); w++) 
+		{
+			int[] path = closestFromJunctions.get(w).path;
+			
+			for (int i = 0; i < path.length; i++)
+				if (path[i] == b)
+					return visit(path, 0, i + 1, visitor);
+		}
+		
+		ArrayList<JunctionData> closestToJunctions = nodes[b].closestJunctions;
+		
+		int minFrom = -1;
+		int minTo = -1;
+		int minDistance = Integer.MAX_VALUE;
+		int[] shortestPath = null;
+		
+		for (int i = 0; i < closestFromJunctions.size(); i++) 
+		{
+			for (int j = 0; j < closestToJunctions.size(); j++) 
+			{
+				int[] tmpPath = junctions[junctionIds[closestFromJunctions.get(i).nodeID]]
+						.paths[junctionIds[closestToJunctions.get(j).nodeID]].get(MOVE.NEUTRAL);
+				int distance = closestFromJunctions.get(i).path.length + tmpPath.length + closestToJunctions.get(j).path.length;
+			
+				if (distance < minDistance)
+				{
+					minDistance = distance;
+					minFrom = i;
+					minTo = j;
+					shortestPath = tmpPath;
+				}
+			}
+		}
+		
+		int[] toJunction = closestToJunctions.get(minTo).reversePath;
+		
+		return visit(closestFromJunctions.get(minFrom).path, 0, closestFromJunctions.get(minFrom).path.length, visitor) 
+				&& visit(shortestPath, 0, shortestPath.length, visitor) 
+				&& visit(toJunction, 0, toJunction.length, visitor);
+	}
+	
+	/*
+	 * Visits the nodes of getPathFromA2B(a, b, lastMoveMade) in order, as above.
+	 */
+	public boolean forEachNodeOnPath(int a, int b, MOVE lastMoveMade, IntPredicate visitor)
+	{
+		if (a == b)
+			return true;
+		
+		JunctionData fromJunction = nodes[a].getNearestJunction(lastMoveMade);
+		
+		for (int i = 0; i < fromJunction.path.length; i++)
+			if (fromJunction.path[i] == b)
+				return visit(fromJunction.path, 0, i + 1, visitor);
+		
+		int junctionFrom = fromJunction.nodeID;
+		int junctionFromId = junctionIds[junctionFrom];
+		MOVE moveEnteredJunction = fromJunction.lastMove.equals(MOVE.NEUTRAL) ? lastMoveMade : fromJunction.lastMove;
+		
+		ArrayList<JunctionData> junctionsTo = nodes[b].closestJunctions;
+		
+		int minDist = Integer.MAX_VALUE;
+		int[] shortestPath = null;
+		int shortestPathLength = 0;
+		int closestJunction = -1;
+		
+		boolean onTheWay = false;
+		
+		for (int q = 0; q < junctionsTo.size(); q++) 
+		{
+			int junctionToId = junctionIds[junctionsTo.get(q).nodeID];
+			
+			if (junctionFromId == junctionToId)
+			{
+				if (!game.getMoveToMakeToReachDirectNeighbour(junctionFrom, junctionsTo.get(q).reversePath[0]).equals(moveEnteredJunction.opposite()))
+				{
+					int[] reversepath = junctionsTo.get(q).reversePath;
+					int cutoff = -1;
+					
+					for (int w = 0; w < reversepath.length; w++)
+						if (reversepath[w] == b)
+							cutoff = w;
+					
+					shortestPath = reversepath;
+					shortestPathLength = cutoff + 1;
+					minDist = shortestPathLength;
+					closestJunction = q;
+					onTheWay = true;
+				}
+			}
+			else
+			{
+				EnumMap<MOVE, int[]> paths = junctions[junctionFromId].paths[junctionToId];
+				
+				for (int m = 0; m < MOVES.length; m++) 
+				{
+					MOVE move = MOVES[m];
+					int[] path = paths.get(move);
+					
+					if (path != null && !move.opposite().equals(moveEnteredJunction) && !move.equals(MOVE.NEUTRAL)) 
+					{
+						if (path.length + junctionsTo.get(q).path.length < minDist)
+						{
+							minDist = path.length + junctionsTo.get(q).path.length;
+							shortestPath = path;
+							shortestPathLength = path.length;
+							closestJunction = q;
+							onTheWay = false;
+						}
+					}
+				}
+			}
+		}
+		
+		if (!visit(fromJunction.path, 0, fromJunction.path.length, visitor) || !visit(shortestPath, 0, shortestPathLength, visitor))
+			return false;
+		
+		return onTheWay || visit(junctionsTo.get(closestJunction).reversePath, 0, junctionsTo.get(closestJunction).reversePath.length, visitor);
+	}
+	
+	private static boolean visit(int[] path, int from, int to, IntPredicate visitor)
+	{
+		for (int i = from; i < to; i++)
+			if (!visitor.test(path[i]))
+				return false;
+		
+		return true;
+	}
+	
 	/////// ghosts //////////
 	
-	//To be made more efficient shortly.
+	//constant-time look-up: same as getPathFromA2B(a, b, lastMoveMade).length
 	public int getPathDistanceFromA2B(int a, int b, MOVE lastMoveMade)
 	{
-		return getPathFromA2B(a, b, lastMoveMade).length;
+		return directedPaths.getDistance(a, b, lastMoveMade);
+	}
+	
+	//constant-time look-up: the first move of getPathFromA2B(a, b, lastMoveMade), MOVE.NEUTRAL if a==b
+	public MOVE getNextMoveFromA2B(int a, int b, MOVE lastMoveMade)
+	{
+		return directedPaths.getNextMove(a, b, lastMoveMade);
 	}
 	
 	public int[] getPathFromA2B(int a, int b, MOVE lastMoveMade)
@@ -185,6 +367,7 @@ public class PathsCache
 //			return concat(fromJunction.path, junctionsTo.get(closestJunction).reversePath);
 	}
 
+	//the junctions are independent of each other, so their paths are computed in parallel (one task per source junction)
 	private Junction[] junctionDistances(Game game)
 	{
 		Maze m = game.getCurrentMaze();
@@ -192,26 +375,33 @@ public class PathsCache
 
 		Junction[] junctions = new Junction[indices.length];
 
-		for (int q = 0; q < indices.length; q++)// from
-		{
-			MOVE[] possibleMoves = m.graph[indices[q]].allPossibleMoves.get(MOVE.NEUTRAL);// all possible moves
+		IntStream.range(0, indices.length).parallel().forEach(q -> junctions[q] = junctionDistances(game, q));
 
-			junctions[q] = new Junction(q, indices[q], indices.length);
+		return junctions;
+	}
 
-			for (int z = 0; z < indices.length; z++)// to (we need to include distance to itself)
+	private Junction junctionDistances(Game game, int q)
+	{
+		Maze m = game.getCurrentMaze();
+		int[] indices = m.junctionIndices;
+		MOVE[] possibleMoves = m.possibleMoves[Maze.NUM_MOVES*indices[q]+MOVE.NEUTRAL.ordinal()];// all possible moves
+
+		AStar astar = m.astar;//safe to share: each thread searches in its own workspace
+
+		Junction junction = new Junction(q, indices[q], indices.length);
+
+		for (int z = 0; z < indices.length; z++)// to (we need to include distance to itself)
+		{
+			for (int i = 0; i < possibleMoves.length; i++) 
 			{
-				for (int i = 0; i < possibleMoves.length; i++) 
-				{
-					int neighbour = game.getNeighbour(indices[q],possibleMoves[i]);
-					int[] p = m.astar.computePathsAStar(neighbour,indices[z], possibleMoves[i], game);
-					m.astar.resetGraph();
+				int neighbour = game.getNeighbour(indices[q],possibleMoves[i]);
+				int[] p = astar.computePathsAStar(neighbour,indices[z], possibleMoves[i], game);
 
-					junctions[q].addPath(z, possibleMoves[i], p);
-				}
+				junction.addPath(z, possibleMoves[i], p);
 			}
 		}
 
-		return junctions;
+		return junction;
 	}
 
 	private DNode[] assignJunctionsToNodes(Game game)
@@ -228,7 +418,7 @@ public class PathsCache
 
 			if(!isJunction)
 			{
-				MOVE[] possibleMoves = m.graph[i].allPossibleMoves.get(MOVE.NEUTRAL);
+				MOVE[] possibleMoves = m.possibleMoves[Maze.NUM_MOVES*i+MOVE.NEUTRAL.ordinal()];
 	
 				for (int j = 0; j < possibleMoves.length; j++) 
 				{
@@ -266,126 +456,223 @@ public class PathsCache
 		return allNodes;
 	}
 	
-	private int[] concat(int[]... arrays) 
-	{
-		int totalLength = 0;
-
-		for (int i = 0; i < arrays.length; i++)
-			totalLength += arrays[i].length;
-
-		int[] fullArray = new int[totalLength];
-
-		int index = 0;
-
-		for (int i = 0; i < arrays.length; i++)
-			for (int j = 0; j < arrays[i].length; j++)
-				fullArray[index++] = arrays[i][j];
-
-		return fullArray;
-	}
-}
-
-class JunctionData 
-{
-	public int nodeID,nodeStartedFrom;
-	public MOVE firstMove, lastMove;
-	public int[] path, reversePath;
-
-	public JunctionData(int nodeID, MOVE firstMove, int nodeStartedFrom, int[] path, MOVE lastMove) 
-	{
-		this.nodeID = nodeID;
-		this.nodeStartedFrom=nodeStartedFrom;
-		this.firstMove = firstMove;
-		this.path = path;
-		this.lastMove = lastMove;
-		
-		if(path.length>0)
-			this.reversePath = getReversePath(path);
-		else
-			reversePath=new int[]{};
-	}
-
-	public int[] getReversePath(int[] path) 
+	/////// snapshot file //////////
+	
+	/*
+	 * Computing the paths takes a while, so they are stored in a binary file next to the maze (same name, extension
+	 * '.paths') and read back in one go on later starts. The file is keyed by a checksum of the maze file and by the
+	 * version of the code computing the paths (ALGORITHM_VERSION): if either changes, the paths are computed and written
+	 * again. The shortest paths between junctions (MOVE.NEUTRAL) are not
+	 * stored, as they are quick to derive from the others.
+	 *
+	 * Format: magic number, format version, key (long: algorithm version in the upper and checksum in the lower half),
+	 * number of nodes, number of junctions, then for each node that is not a junction the number of paths to its
+	 * closest junctions followed by those paths, and for each pair of junctions the number of paths between them
+	 * followed by those paths. A path to a junction is stored as junction, start node, first move, last move and the
+	 * nodes along the path; a path between junctions as first move and nodes.
+	 */
+	private static final int MAGIC = 0x50435053;		//"PCPS"
+	private static final int VERSION = 1;
+	
+	//Bump whenever the paths computed may change: AStar, assignJunctionsToNodes(), junctionDistances() and their helpers
+	private static final int ALGORITHM_VERSION = 2;
+	
+	//Returns whether the paths could be read from the file; if not, they need to be computed.
+	private boolean read(File file, long key, Maze m) 
 	{
-		int[] reversePath = new int[path.length];
-
-		for (int i = 1; i < reversePath.length; i++)
-			reversePath[i-1] = path[path.length - 1 - i];
-
-		reversePath[reversePath.length-1]=nodeStartedFrom;
+		if (!file.exists())
+			return false;
+		
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())))) 
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != key 
+					|| in.readInt() != m.graph.length || in.readInt() != m.junctionIndices.length)
+				return false;
+			
+			DNode[] allNodes = new DNode[m.graph.length];
+			
+			for (int i = 0; i < allNodes.length; i++) 
+			{
+				boolean isJunction = game.isJunction(i);
+				allNodes[i] = new DNode(i, isJunction);
+				
+				if (!isJunction) 
+				{
+					int numPaths = in.readInt();
+					
+					for (int j = 0; j < numPaths; j++) 
+					{
+						int junctionID = in.readInt();
+						int nodeStartedFrom = in.readInt();
+						MOVE firstMove = MOVES[in.readByte()];
+						MOVE lastMove = MOVES[in.readByte()];
+						
+						allNodes[i].addPath(junctionID, firstMove, nodeStartedFrom, readPath(in, m.graph.length), lastMove);
+					}
+				}
+			}
+			
+			int[] indices = m.junctionIndices;
+			Junction[] allJunctions = new Junction[indices.length];
+			
+			for (int q = 0; q < indices.length; q++) 
+			{
+				allJunctions[q] = new Junction(q, indices[q], indices.length);
 				
-		return reversePath;
+				for (int z = 0; z < indices.length; z++) 
+				{
+					int numPaths = in.readInt();
+					
+					for (int i = 0; i < numPaths; i++) 
+					{
+						MOVE firstMove = MOVES[in.readByte()];
+						allJunctions[q].addPath(z, firstMove, readPath(in, m.graph.length));
+					}
+				}
+			}
+			
+			nodes = allNodes;
+			junctions = allJunctions;
+			
+			return true;
+		}
+		catch (IOException | RuntimeException e) 
+		{
+			//truncated or corrupt: compute the paths again
+			return false;
+		}
 	}
-
-	public String toString() 
+	
+	//Writes the paths to the file. The file is written under a temporary name first and then moved into place.
+	private void write(File file, long key) 
 	{
-		return nodeID + "\t" + firstMove.toString() + "\t" + Arrays.toString(path);
+		if (nodes.length > 0x10000)
+			return;
+		
+		try 
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			
+			try (DataOutputStream out = new DataOutputStream(bytes)) 
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(key);
+				out.writeInt(nodes.length);
+				out.writeInt(junctions.length);
+				
+				for (DNode node : nodes) 
+				{
+					if (!node.isJunction) 
+					{
+						out.writeInt(node.closestJunctions.size());
+						
+						for (JunctionData data : node.closestJunctions) 
+						{
+							out.writeInt(data.nodeID);
+							out.writeInt(data.nodeStartedFrom);
+							out.writeByte(data.firstMove.ordinal());
+							out.writeByte(data.lastMove.ordinal());
+							writePath(out, data.path);
+						}
+					}
+				}
+				
+				for (Junction junction : junctions) 
+				{
+					for (EnumMap<MOVE, int[]> paths : junction.paths) 
+					{
+						out.writeInt(paths.size());
+						
+						for (Entry<MOVE, int[]> entry : paths.entrySet()) 
+						{
+							out.writeByte(entry.getKey().ordinal());
+							writePath(out, entry.getValue());
+						}
+					}
+				}
+			}
+			
+			File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+			
+			try 
+			{
+				Files.write(tmp.toPath(), bytes.toByteArray());
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			finally 
+			{
+				tmp.delete();
+			}
+		}
+		catch (IOException ioe) 
+		{
+			//read-only installation: the paths are simply computed again next time
+		}
 	}
-}
-
-class DNode 
-{
-	public int nodeID;
-	public ArrayList<JunctionData> closestJunctions;
-	public boolean isJunction;
 	
-	public DNode(int nodeID, boolean isJunction) 
+	//Reads a path of the maze with the given number of nodes; the length is checked before the path is allocated.
+	private static int[] readPath(DataInputStream in, int numNodes) throws IOException 
 	{
-		this.nodeID = nodeID;
-		this.isJunction=isJunction;
+		int length = in.readInt();
+		
+		if (length < 0 || 2L * length > in.available())
+			throw new IOException("Unexpected path length: " + length);
 		
-		this.closestJunctions = new ArrayList<JunctionData>();
+		int[] path = new int[length];
 		
-		if(isJunction)
-			closestJunctions.add(new JunctionData(nodeID,MOVE.NEUTRAL,nodeID,new int[]{},MOVE.NEUTRAL));
+		for (int i = 0; i < path.length; i++) 
+		{
+			path[i] = in.readUnsignedShort();
+			
+			if (path[i] >= numNodes)
+				throw new IOException("Unexpected node index: " + path[i]);
+		}
+		
+		return path;
 	}
-
-	public int[] getPathToJunction(MOVE lastMoveMade) 
+	
+	private static void writePath(DataOutputStream out, int[] path) throws IOException 
 	{
-		if(isJunction)
-			return new int[]{};
+		out.writeInt(path.length);
 		
-		for (int i = 0; i < closestJunctions.size(); i++)
-			if (!closestJunctions.get(i).firstMove.equals(lastMoveMade.opposite()))
-				return closestJunctions.get(i).path;
-
-		return null;
+		for (int i = 0; i < path.length; i++)
+			out.writeShort(path[i]);
 	}
-
-	public JunctionData getNearestJunction(MOVE lastMoveMade) 
+	
+	//Checksum of the maze file, used to detect stale snapshot files.
+	private static long checksum(File file) 
 	{
-		if(isJunction)
-			return closestJunctions.get(0);
+		CRC32 crc = new CRC32();
 		
-		int minDist=Integer.MAX_VALUE;
-		int bestIndex=-1;
+		try 
+		{
+			crc.update(Files.readAllBytes(file.toPath()));
+		}
+		catch (IOException ioe) 
+		{
+			ioe.printStackTrace();
+		}
 		
-		for (int i = 0; i < closestJunctions.size(); i++)
-			if (!closestJunctions.get(i).firstMove.equals(lastMoveMade.opposite()))
-			{
-				int newDist=closestJunctions.get(i).path.length;
-				
-				if(newDist<minDist)
-				{
-					minDist=newDist;
-					bestIndex=i;
-				}
-			}
-
-		if(bestIndex!=-1)
-			return closestJunctions.get(bestIndex);
-		else
-			return null;
+		return crc.getValue();
 	}
-
-	public void addPath(int junctionID, MOVE firstMove, int nodeStartedFrom,int[] path, MOVE lastMove) 
+	
+	private int[] concat(int[]... arrays) 
 	{
-		closestJunctions.add(new JunctionData(junctionID, firstMove, nodeStartedFrom,path, lastMove));
-	}
+		int totalLength = 0;
 
-	public String toString() 
-	{
-		return "" + nodeID + "\t" + isJunction;
+		for (int i = 0; i < arrays.length; i++)
+			totalLength += arrays[i].length;
+
+		int[] fullArray = new int[totalLength];
+
+		int index = 0;
+
+		for (int i = 0; i < arrays.length; i++)
+			for (int j = 0; j < arrays[i].length; j++)
+				fullArray[index++] = arrays[i][j];
+
+		return fullArray;
 	}
 }
 
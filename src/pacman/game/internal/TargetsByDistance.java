@@ -0,0 +1,88 @@
+package pacman.game.internal;
+
+import java.util.Arrays;
+
+/*
+ * For every node of a maze, a fixed set of targets (the pills or the power pills) sorted by their shortest path
+ * distance from that node. As the set of pills only ever shrinks during a level, the nearest active pill is the first
+ * entry of the list that has not been eaten yet: queries for the nearest, the k nearest or all pills within a given
+ * distance walk the list and stop as soon as they have their answer, without computing a single distance for the
+ * pills they skip. Targets at the same distance are listed in the order of their indices, which is the order in
+ * which Game.getClosestNodeIndexFromNodeIndex() breaks ties when given the pills in that order.
+ *
+ * Targets are stored by their index (pill index or power pill index) in a char each, about 0.6MB for the pills of
+ * each of the built-in mazes. The lists are sorted with a counting sort over the distances, which is stable. Targets
+ * that cannot be reached from a node (distance -1, e.g. from the lair) come first, as -1 is also the smallest
+ * distance to Game.getClosestNodeIndexFromNodeIndex().
+ */
+public final class TargetsByDistance
+{
+	private final int numTargets;
+	private final int[] targetNodes;			//node index of each target (shared with the maze)
+	private final char[] sorted;				//numTargets*nodeIndex+rank: index of the target
+
+	TargetsByDistance(Maze maze,int[] targetNodes)
+	{
+		this.targetNodes=targetNodes;
+
+		int numNodes=maze.graph.length;
+		numTargets=targetNodes.length;
+
+		if(numTargets>Character.MAX_VALUE+1)
+			throw new IllegalArgumentException("Too many targets: "+numTargets);
+
+		sorted=new char[numNodes*numTargets];
+
+		DistanceTable distances=maze.shortestPathDistances;
+		int[] distance=new int[numTargets];
+		int[] counts=new int[1];
+
+		for(int from=0;from<numNodes;from++)
+		{
+			int maxDistance=0;
+
+			for(int t=0;t<numTargets;t++)
+			{
+				distance[t]=distances.get(from,targetNodes[t])+1;		//-1 (not connected) sorts first
+				maxDistance=Math.max(maxDistance,distance[t]);
+			}
+
+			if(counts.length<maxDistance+2)
+				counts=new int[maxDistance+2];
+			else
+				Arrays.fill(counts,0);
+
+			for(int t=0;t<numTargets;t++)
+				counts[distance[t]+1]++;
+
+			for(int d=1;d<counts.length;d++)
+				counts[d]+=counts[d-1];
+
+			int offset=numTargets*from;
+
+			for(int t=0;t<numTargets;t++)
+				sorted[offset+counts[distance[t]]++]=(char)t;
+		}
+	}
+
+	public int getNumberOfTargets()
+	{
+		return numTargets;
+	}
+
+	/*
+	 * The index of the target with the given rank (0 is the closest) as seen from the node specified.
+	 */
+	public int getTarget(int nodeIndex,int rank)
+	{
+		return sorted[numTargets*nodeIndex+rank];
+	}
+
+	/*
+	 * The node index of the target with the given index.
+	 */
+	public int getTargetNodeIndex(int target)
+	{
+		return targetNodes[target];
+	}
+}